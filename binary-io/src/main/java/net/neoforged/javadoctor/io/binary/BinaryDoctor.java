@@ -0,0 +1,184 @@
+package net.neoforged.javadoctor.io.binary;
+
+import net.neoforged.javadoctor.spec.ClassJavadoc;
+import net.neoforged.javadoctor.spec.DocReferences;
+import net.neoforged.javadoctor.spec.JavadocEntry;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A binary doctor file, as written by {@link BinaryJDocIO}, which decodes the docs of a class only when they are read.
+ * Only the class index is read up-front, and strings are decoded the first time they are used.
+ * <p>
+ * Reading is thread-safe, as long as the underlying buffer is not modified.
+ */
+public final class BinaryDoctor {
+    private final ByteBuffer buffer;
+    private final int[] stringOffsets;
+    private final int[] stringLengths;
+    private final String[] strings;
+    private final DocReferences references;
+    private final Map<String, Integer> classOffsets;
+
+    private BinaryDoctor(ByteBuffer buffer, int[] stringOffsets, int[] stringLengths, DocReferences references, Map<String, Integer> classOffsets) {
+        this.buffer = buffer;
+        this.stringOffsets = stringOffsets;
+        this.stringLengths = stringLengths;
+        this.strings = new String[stringOffsets.length];
+        this.references = references;
+        this.classOffsets = classOffsets;
+    }
+
+    public static BinaryDoctor open(ByteBuffer buffer) throws IOException {
+        final ByteBuffer buf = buffer.duplicate();
+        try {
+            final byte[] magic = new byte[BinaryJDocIO.MAGIC.length];
+            buf.get(magic);
+            if (!BinaryJDocIO.isBinary(magic)) {
+                throw new IOException("Not a binary doctor file");
+            }
+            final int version = buf.get() & 0xFF;
+            if (version != BinaryJDocIO.VERSION) {
+                throw new IOException("Cannot read binary doctor files of version: " + version);
+            }
+
+            // Only remember where the strings are, they're decoded when first used
+            final int[] stringOffsets = new int[varint(buf)];
+            final int[] stringLengths = new int[stringOffsets.length];
+            for (int i = 0; i < stringOffsets.length; i++) {
+                stringLengths[i] = varint(buf);
+                stringOffsets[i] = buf.position();
+                buf.position(buf.position() + stringLengths[i]);
+            }
+
+            final BinaryDoctor doctor = new BinaryDoctor(buffer.duplicate(), stringOffsets, stringLengths, new DocReferences(new HashMap<>()), new LinkedHashMap<>());
+            final int references = varint(buf);
+            for (int i = 0; i < references; i++) {
+                doctor.references.getClasses().put(doctor.string(buf), doctor.string(buf));
+            }
+
+            final int classes = varint(buf);
+            final int[] offsets = new int[classes];
+            final String[] names = new String[classes];
+            for (int i = 0; i < classes; i++) {
+                names[i] = doctor.string(buf);
+                offsets[i] = varint(buf);
+            }
+            final int dataStart = buf.position();
+            for (int i = 0; i < classes; i++) {
+                doctor.classOffsets.put(names[i], dataStart + offsets[i]);
+            }
+            return doctor;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException exception) {
+            throw new IOException("Malformed binary doctor file", exception);
+        }
+    }
+
+    public DocReferences getReferences() {
+        return references;
+    }
+
+    public Set<String> getClassNames() {
+        return Collections.unmodifiableSet(classOffsets.keySet());
+    }
+
+    @Nullable
+    public ClassJavadoc readClass(String className) {
+        final Integer offset = classOffsets.get(className);
+        if (offset == null) return null;
+        final ByteBuffer buf = buffer.duplicate();
+        buf.position(offset);
+        return classDoc(buf);
+    }
+
+    private ClassJavadoc classDoc(ByteBuffer buf) {
+        final int flags = buf.get();
+        final JavadocEntry clazz = (flags & BinaryJDocIO.CLASS_ENTRY) == 0 ? null : entry(buf);
+        final Map<String, JavadocEntry> methods = (flags & BinaryJDocIO.CLASS_METHODS) == 0 ? null : entries(buf);
+        final Map<String, JavadocEntry> fields = (flags & BinaryJDocIO.CLASS_FIELDS) == 0 ? null : entries(buf);
+        final int innerCount = varint(buf);
+        final Map<String, ClassJavadoc> innerClasses = new LinkedHashMap<>(innerCount);
+        for (int i = 0; i < innerCount; i++) {
+            innerClasses.put(string(buf), classDoc(buf));
+        }
+        return new ClassJavadoc(clazz, methods, fields, innerClasses);
+    }
+
+    private Map<String, JavadocEntry> entries(ByteBuffer buf) {
+        final int count = varint(buf);
+        final Map<String, JavadocEntry> entries = new LinkedHashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.put(string(buf), entry(buf));
+        }
+        return entries;
+    }
+
+    private JavadocEntry entry(ByteBuffer buf) {
+        final int flags = buf.get();
+        final String doc = (flags & BinaryJDocIO.ENTRY_DOC) == 0 ? null : string(buf);
+        Map<String, List<String>> tags = null;
+        if ((flags & BinaryJDocIO.ENTRY_TAGS) != 0) {
+            final int count = varint(buf);
+            tags = new LinkedHashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                final String tag = string(buf);
+                final int valueCount = varint(buf);
+                final List<String> values = new ArrayList<>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(string(buf));
+                }
+                tags.put(tag, values);
+            }
+        }
+        final String[] parameters = (flags & BinaryJDocIO.ENTRY_PARAMETERS) == 0 ? null : strings(buf);
+        final String[] typeParameters = (flags & BinaryJDocIO.ENTRY_TYPE_PARAMETERS) == 0 ? null : strings(buf);
+        return new JavadocEntry(doc, tags, parameters, typeParameters);
+    }
+
+    private String[] strings(ByteBuffer buf) {
+        final String[] strings = new String[varint(buf)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = string(buf);
+        }
+        return strings;
+    }
+
+    @Nullable
+    private String string(ByteBuffer buf) {
+        final int ref = varint(buf);
+        if (ref == 0) return null;
+        String string = strings[ref - 1];
+        if (string == null) {
+            // Racing threads may both decode the string, but they'll decode the same one
+            final ByteBuffer bytes = buffer.duplicate();
+            bytes.position(stringOffsets[ref - 1]);
+            bytes.limit(stringOffsets[ref - 1] + stringLengths[ref - 1]);
+            string = StandardCharsets.UTF_8.decode(bytes).toString();
+            strings[ref - 1] = string;
+        }
+        return string;
+    }
+
+    static int varint(ByteBuffer buf) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
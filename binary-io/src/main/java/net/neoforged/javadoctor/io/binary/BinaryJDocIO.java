@@ -0,0 +1,196 @@
+package net.neoforged.javadoctor.io.binary;
+
+import net.neoforged.javadoctor.spec.ClassJavadoc;
+import net.neoforged.javadoctor.spec.JavadocEntry;
+import net.neoforged.javadoctor.spec.JavadoctorInformation;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes doctor files in a compact binary format. The layout of a file is:
+ * <pre>
+ * magic           "JDOC"
+ * version         u8
+ * strings         varint count, then for each: varint length, UTF-8 bytes
+ * references      varint count, then for each: class name ref, internal name ref
+ * index           varint count, then for each: class name ref, varint offset of the class in the data
+ * data            the class docs
+ * </pre>
+ * All lengths and counts are unsigned varints. A string ref is a varint of the index of the string plus one, or 0 for {@code null}.
+ * <p>
+ * Class docs are encoded as a byte of flags (1 = class entry, 2 = methods, 4 = fields), followed by the present parts
+ * and a list of inner classes. Entries are encoded as a byte of flags (1 = doc, 2 = tags, 4 = parameters, 8 = type parameters),
+ * followed by the present parts.
+ * <p>
+ * JSON remains the interchange format, this format only exists to make loading large doctor files cheaper.
+ */
+public class BinaryJDocIO {
+    public static final int VERSION = 1;
+    static final byte[] MAGIC = {'J', 'D', 'O', 'C'};
+    /**
+     * The amount of bytes needed by {@link #isBinary(byte[])} to tell binary doctor files apart.
+     */
+    public static final int HEADER_SIZE = MAGIC.length;
+
+    static final int CLASS_ENTRY = 1, CLASS_METHODS = 2, CLASS_FIELDS = 4;
+    static final int ENTRY_DOC = 1, ENTRY_TAGS = 2, ENTRY_PARAMETERS = 4, ENTRY_TYPE_PARAMETERS = 8;
+
+    /**
+     * Checks whether the given bytes start with the header of a binary doctor file.
+     */
+    public static boolean isBinary(byte[] bytes) {
+        if (bytes.length < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    public static JavadoctorInformation read(ByteBuffer buffer) throws IOException {
+        final BinaryDoctor doctor = BinaryDoctor.open(buffer);
+        final Map<String, ClassJavadoc> classDocs = new LinkedHashMap<>();
+        for (final String className : doctor.getClassNames()) {
+            classDocs.put(className, doctor.readClass(className));
+        }
+        return new JavadoctorInformation(doctor.getReferences(), classDocs);
+    }
+
+    public static void write(JavadoctorInformation docs, OutputStream out) throws IOException {
+        final Encoder encoder = new Encoder();
+
+        final Encoder.Buffer references = new Encoder.Buffer();
+        final Map<String, String> referencedClasses = docs.getReferences() == null ? new HashMap<>() : docs.getReferences().getClasses();
+        references.varint(referencedClasses.size());
+        referencedClasses.forEach((className, internalName) -> {
+            references.varint(encoder.string(className));
+            references.varint(encoder.string(internalName));
+        });
+
+        final Encoder.Buffer index = new Encoder.Buffer();
+        final Encoder.Buffer data = new Encoder.Buffer();
+        index.varint(docs.getClassDocs().size());
+        docs.getClassDocs().forEach((className, doc) -> {
+            index.varint(encoder.string(className));
+            index.varint(data.size());
+            encoder.classDoc(data, doc);
+        });
+
+        final Encoder.Buffer header = new Encoder.Buffer();
+        header.write(MAGIC, 0, MAGIC.length);
+        header.write(VERSION);
+        header.varint(encoder.strings.size());
+        for (final byte[] string : encoder.strings) {
+            header.varint(string.length);
+            header.write(string, 0, string.length);
+        }
+
+        header.writeTo(out);
+        references.writeTo(out);
+        index.writeTo(out);
+        data.writeTo(out);
+    }
+
+    private static final class Encoder {
+        private final Map<String, Integer> stringIndices = new HashMap<>();
+        private final List<byte[]> strings = new ArrayList<>();
+
+        private int string(@Nullable String string) {
+            if (string == null) return 0;
+            Integer index = stringIndices.get(string);
+            if (index == null) {
+                strings.add(string.getBytes(StandardCharsets.UTF_8));
+                index = strings.size();
+                stringIndices.put(string, index);
+            }
+            return index;
+        }
+
+        private void classDoc(Buffer out, ClassJavadoc doc) {
+            out.write((doc.clazz() == null ? 0 : CLASS_ENTRY) | (doc.methods() == null ? 0 : CLASS_METHODS) | (doc.fields() == null ? 0 : CLASS_FIELDS));
+            if (doc.clazz() != null) {
+                entry(out, doc.clazz());
+            }
+            if (doc.methods() != null) {
+                entries(out, doc.methods());
+            }
+            if (doc.fields() != null) {
+                entries(out, doc.fields());
+            }
+            out.varint(nonNullValues(doc.innerClasses()));
+            doc.innerClasses().forEach((name, inner) -> {
+                if (inner != null) {
+                    out.varint(string(name));
+                    classDoc(out, inner);
+                }
+            });
+        }
+
+        private void entries(Buffer out, Map<String, JavadocEntry> entries) {
+            out.varint(nonNullValues(entries));
+            entries.forEach((key, entry) -> {
+                if (entry != null) {
+                    out.varint(string(key));
+                    entry(out, entry);
+                }
+            });
+        }
+
+        // Like json, null values are left out of maps
+        private static int nonNullValues(Map<String, ?> map) {
+            int count = 0;
+            for (final Object value : map.values()) {
+                if (value != null) count++;
+            }
+            return count;
+        }
+
+        private void entry(Buffer out, JavadocEntry entry) {
+            out.write((entry.doc() == null ? 0 : ENTRY_DOC) | (entry.tags() == null ? 0 : ENTRY_TAGS)
+                    | (entry.parameters() == null ? 0 : ENTRY_PARAMETERS) | (entry.typeParameters() == null ? 0 : ENTRY_TYPE_PARAMETERS));
+            if (entry.doc() != null) {
+                out.varint(string(entry.doc()));
+            }
+            if (entry.tags() != null) {
+                out.varint(entry.tags().size());
+                entry.tags().forEach((tag, values) -> {
+                    out.varint(string(tag));
+                    out.varint(values.size());
+                    values.forEach(value -> out.varint(string(value)));
+                });
+            }
+            if (entry.parameters() != null) {
+                strings(out, entry.parameters());
+            }
+            if (entry.typeParameters() != null) {
+                strings(out, entry.typeParameters());
+            }
+        }
+
+        private void strings(Buffer out, String[] strings) {
+            out.varint(strings.length);
+            for (final String string : strings) {
+                out.varint(string(string));
+            }
+        }
+
+        private static final class Buffer extends ByteArrayOutputStream {
+            private void varint(int value) {
+                while ((value & ~0x7F) != 0) {
+                    write((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                write(value);
+            }
+        }
+    }
+}
@@ -1,97 +1,228 @@
 package net.neoforged.javadoctor.collector;
 
-import net.neoforged.javadoctor.collector.util.Hierarchy;
 import net.neoforged.javadoctor.collector.util.Names;
 import org.jetbrains.annotations.Nullable;
 
-import javax.lang.model.element.ElementKind;
-import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Supplier;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
 
 public record DocFQNExpander(Elements elements, Names names, Map<String, String> internalClassNames) {
-    public static final Pattern PATTERN = Pattern.compile("@(?<tag>link|linkplain|see|value)(?<space>\\s+)(?<owner>[\\w$.]*)(?:#(?<member>[\\w%]+)?(?<descFull>\\((?<desc>[\\w$., \\[\\]]+)?\\))?)?");
-    public String expand(TypeElement declaringClass, String doc, JavadocCollector.Imports imports) {
-        final TypeElement topLevel = Hierarchy.getTopLevel(declaringClass);
-        final Supplier<Map<String, TypeElement>> members = JavadocCollector.memoized(() -> {
-            final Map<String, TypeElement> memberMap = new HashMap<>();
-            Stream.concat(Stream.of(topLevel), Hierarchy.walkChildren(topLevel))
-                    .forEach(t -> t.getEnclosedElements().stream().filter(f -> f.getKind() == ElementKind.ENUM_CONSTANT || f.getKind() == ElementKind.FIELD || f.getKind() == ElementKind.METHOD)
-                            .forEach(element -> memberMap.put(
-                                    element.getKind() == ElementKind.METHOD ? element.getSimpleName().toString() : "#" + element.getSimpleName(),
-                                    t
-                            )));
-            return memberMap;
-        });
-        return PATTERN.matcher(doc).replaceAll(result -> {
-            final StringBuffer text = new StringBuffer()
-                    .append('@').append(result.group(1)).append(result.group(2));
-            final String owner = getQualified(imports, result.group(3));
-            final String member = result.group(4);
-            final String descFull = result.group(5);
-            final boolean hasDesc = descFull != null && !descFull.isBlank();
-            String desc = result.group(6);
-            if (hasDesc && desc == null) desc = "";
-            if (owner == null || owner.isBlank()) {
-                if (member == null) {
-                    return result.group(0);
-                }
-                final TypeElement actualOwner = members.get().get(hasDesc ? member : "#" + member); // this isn't flawless, it will find the wrong one when there's a lot of nesting of classes with the same member names
-                if (actualOwner != null) {
-                    final String qualifiedName = actualOwner.getQualifiedName().toString();
-                    text.append(qualifiedName);
-                    internalClassNames.put(qualifiedName, names.getInternalName(actualOwner));
-                }
+    private static final String[] TAGS = {"link", "linkplain", "see", "value"};
+
+    /**
+     * Expands the references of the doc to qualified names in a single pass, passing each line of the expanded doc to the line consumer.
+     * This doesn't use javac, the qualified names of the referenced classes are instead passed to the reference consumer, to be recorded with {@link #addReference(String)}.
+     * <p>
+     * References are {@code @link}, {@code @linkplain}, {@code @see} and {@code @value} tags, followed by whitespace,
+     * an owner of word characters, {@code $} and {@code .}, and optionally {@code #} followed by a member name and a parenthesized descriptor.
+     */
+    public void expand(String doc, JavadocCollector.Imports imports, Consumer<String> references, Consumer<String> lines) {
+        final Output out = new Output(imports, lines);
+        int i = 0;
+        while (i < doc.length()) {
+            final int end = doc.charAt(i) == '@' ? expandReference(doc, i, imports, references, out) : -1;
+            if (end == -1) {
+                out.append(doc.charAt(i++));
             } else {
-                text.append(owner);
+                i = end;
+            }
+        }
+        out.finish();
+    }
+
+    /**
+     * Expands the reference starting at the given {@code @}.
+     *
+     * @return the end of the reference, or {@code -1} if there is no reference at the given index
+     */
+    private int expandReference(String doc, int start, JavadocCollector.Imports imports, Consumer<String> references, Output out) {
+        String tag = null;
+        for (final String candidate : TAGS) {
+            final int tagEnd = start + 1 + candidate.length();
+            if (doc.startsWith(candidate, start + 1) && tagEnd < doc.length() && isWhitespace(doc.charAt(tagEnd))) {
+                tag = candidate;
+                break;
             }
+        }
+        if (tag == null) return -1;
+
+        final int spaceStart = start + 1 + tag.length();
+        final int ownerStart = skip(doc, spaceStart, DocFQNExpander::isWhitespace);
+        int end = skip(doc, ownerStart, c -> isWordChar(c) || c == '$' || c == '.');
+        final String space = doc.substring(spaceStart, ownerStart);
+        final String ownerName = doc.substring(ownerStart, end);
+
+        String member = null;
+        String desc = null;
+        if (end < doc.length() && doc.charAt(end) == '#') {
+            final int memberStart = end + 1;
+            end = skip(doc, memberStart, c -> isWordChar(c) || c == '%');
+            if (end > memberStart) {
+                member = doc.substring(memberStart, end);
+            }
+            if (end < doc.length() && doc.charAt(end) == '(') {
+                final int descEnd = skip(doc, end + 1, c -> isWordChar(c) || c == '$' || c == '.' || c == ',' || c == ' ' || c == '[' || c == ']');
+                if (descEnd < doc.length() && doc.charAt(descEnd) == ')') {
+                    desc = doc.substring(end + 1, descEnd);
+                    end = descEnd + 1;
+                }
+            }
+        }
+
+        final String owner = getQualified(imports, ownerName, references);
+        if (owner.isBlank()) {
+            out.startReference(tag, space);
             if (member == null) {
-                return text.toString();
+                out.append(doc, ownerStart, end);
+                return end;
+            }
+            final String actualOwner = imports.getMemberOwner(desc != null ? member : "#" + member);
+            if (actualOwner != null) {
+                out.append(actualOwner);
+                references.accept(actualOwner);
+            }
+        } else {
+            out.startReference(tag, space);
+            out.append(owner);
+        }
+        if (member == null) {
+            return end;
+        }
+        out.append('#');
+        out.append(member);
+        if (desc != null) {
+            out.append('(');
+            out.append(String.join(", ", getParameterTypes(desc, imports, references)));
+            out.append(')');
+        }
+        return end;
+    }
+
+    private static int skip(String doc, int index, CharPredicate predicate) {
+        while (index < doc.length() && predicate.test(doc.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    @FunctionalInterface
+    private interface CharPredicate {
+        boolean test(char c);
+    }
+
+    /**
+     * Builds the lines of the expanded doc.
+     * The target of a reference followed by a single space is looked up in the imports once more when it ends, which may only be after
+     * the text following the reference.
+     */
+    private static final class Output {
+        private final JavadocCollector.Imports imports;
+        private final Consumer<String> lines;
+        private final StringBuilder line = new StringBuilder();
+        private int targetStart = -1;
+
+        private Output(JavadocCollector.Imports imports, Consumer<String> lines) {
+            this.imports = imports;
+            this.lines = lines;
+        }
+
+        void startReference(String tag, String space) {
+            append('@');
+            append(tag);
+            append(space);
+            if (space.equals(" ")) {
+                targetStart = line.length();
             }
-            text.append('#').append(member);
-            if (!hasDesc) {
-                return text.toString();
+        }
+
+        void append(String text) {
+            append(text, 0, text.length());
+        }
+
+        void append(String text, int start, int end) {
+            for (int i = start; i < end; i++) {
+                append(text.charAt(i));
+            }
+        }
+
+        void append(char c) {
+            if (targetStart != -1 && !isTargetChar(c)) {
+                qualifyTarget();
             }
-            return text.append('(').append(String.join(", ", getParameterTypes(desc, imports))).append(')').toString();
-        });
+            if (c == '\n') {
+                lines.accept(line.toString());
+                line.setLength(0);
+            } else {
+                line.append(c);
+            }
+        }
+
+        void finish() {
+            if (targetStart != -1) {
+                qualifyTarget();
+            }
+            lines.accept(line.toString());
+        }
+
+        private void qualifyTarget() {
+            if (line.length() > targetStart) {
+                final String target = line.substring(targetStart);
+                line.setLength(targetStart);
+                line.append(imports.getQualified(target));
+            }
+            targetStart = -1;
+        }
+
+        private static boolean isTargetChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '_';
+        }
     }
 
-    private String[] getParameterTypes(String desc, JavadocCollector.Imports imports) {
+    private String[] getParameterTypes(String desc, JavadocCollector.Imports imports, Consumer<String> references) {
         final String[] sDesc = desc.split(",");
         final String[] nDesc = new String[sDesc.length];
         for (int i = 0; i < sDesc.length; i++) {
             String d = sDesc[i].trim();
             if (d.endsWith("...")) {
-                nDesc[i] = getQualified(imports, d.substring(0, d.length() - 3)) + "...";
+                nDesc[i] = getQualified(imports, d.substring(0, d.length() - 3), references) + "...";
             } else {
                 int arrayAmount = 0;
                 while (d.endsWith("[]")) {
                     arrayAmount++;
                     d = d.substring(0, d.length() - 2);
                 }
-                nDesc[i] = getQualified(imports, d) + "[]".repeat(arrayAmount);
+                nDesc[i] = getQualified(imports, d, references) + "[]".repeat(arrayAmount);
             }
         }
         return nDesc;
     }
 
     @Nullable
-    private String getQualified(JavadocCollector.Imports imports, @Nullable String reference) {
+    private String getQualified(JavadocCollector.Imports imports, @Nullable String reference, Consumer<String> references) {
         if (reference == null) return null;
 
         final String qualified = imports.getQualified(reference);
         if (!qualified.isBlank()) {
-            if (internalClassNames.get(qualified) == null) {
-                final var typeEl = elements.getTypeElement(qualified);
-                if (typeEl != null) {
-                    internalClassNames.put(qualified, names.getInternalName(typeEl));
-                }
-            }
+            references.accept(qualified);
         }
         return qualified;
     }
+
+    public void addReference(String qualified) {
+        if (internalClassNames.get(qualified) == null) {
+            final var typeEl = elements.getTypeElement(qualified);
+            if (typeEl != null) {
+                internalClassNames.put(qualified, names.getInternalName(typeEl));
+            }
+        }
+    }
 }
@@ -0,0 +1,308 @@
+package net.neoforged.javadoctor.collector;
+
+import com.sun.source.doctree.DeprecatedTree;
+import com.sun.source.doctree.DocCommentTree;
+import com.sun.source.doctree.DocTree;
+import com.sun.source.doctree.LinkTree;
+import com.sun.source.doctree.ParamTree;
+import com.sun.source.doctree.ReferenceTree;
+import com.sun.source.doctree.ReturnTree;
+import com.sun.source.doctree.SeeTree;
+import com.sun.source.doctree.SinceTree;
+import com.sun.source.doctree.TextTree;
+import com.sun.source.doctree.ThrowsTree;
+import com.sun.source.doctree.UnknownBlockTagTree;
+import com.sun.source.doctree.UnknownInlineTagTree;
+import com.sun.source.doctree.ValueTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.DocTreePath;
+import com.sun.source.util.DocTrees;
+import com.sun.source.util.SimpleDocTreeVisitor;
+import com.sun.source.util.TreePath;
+import org.jetbrains.annotations.Nullable;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Renders doc comments from their doc trees rather than from their text, with the references resolved by javac written as qualified names.
+ * Unlike the {@link DocFQNExpander}, this doesn't guess referenced classes from the imports, and only expands actual tags.
+ * References which javac can't resolve are kept as written.
+ */
+class DocTreeRenderer {
+    private final DocTrees trees;
+    private final Types types;
+    // Resolving a reference sets up the scope it's resolved in, which is much slower than rendering it, so resolved references are shared by their scopes
+    private final Map<Element, Map<String, Optional<Element>>> resolved = new HashMap<>();
+    // Looking up the path of an element scans its whole compilation unit, so the paths of the members of a class are found in a single pass
+    private final Map<TypeElement, Map<Element, TreePath>> memberPaths = new HashMap<>();
+
+    DocTreeRenderer(DocTrees trees, Types types) {
+        this.trees = trees;
+        this.types = types;
+    }
+
+    /**
+     * A rendered doc comment.
+     *
+     * @param comment    the comment, with its block tags on their own lines
+     * @param references the qualified names of the classes referenced by the comment
+     */
+    record RenderedDoc(String comment, List<String> references) {}
+
+    @Nullable
+    RenderedDoc render(Element element) {
+        final TreePath path = getPath(element);
+        if (path == null) return null;
+        final DocCommentTree comment = trees.getDocCommentTree(path);
+        if (comment == null) return null;
+
+        final Renderer renderer = new Renderer(new DocTreePath(path, comment), resolved.computeIfAbsent(getScope(element), k -> new HashMap<>()));
+        renderer.render(comment.getFullBody());
+        for (final DocTree tag : comment.getBlockTags()) {
+            renderer.out.append('\n');
+            tag.accept(renderer, null);
+        }
+        return new RenderedDoc(renderer.out.toString(), renderer.references);
+    }
+
+    /**
+     * Clears the resolved references, as elements shouldn't be used across rounds.
+     */
+    void clearCaches() {
+        resolved.clear();
+        memberPaths.clear();
+    }
+
+    @Nullable
+    private TreePath getPath(Element element) {
+        if (element instanceof TypeElement || !(element.getEnclosingElement() instanceof TypeElement owner)) {
+            return trees.getPath(element);
+        }
+        return memberPaths.computeIfAbsent(owner, this::findMemberPaths).get(element);
+    }
+
+    private Map<Element, TreePath> findMemberPaths(TypeElement type) {
+        final TreePath path = trees.getPath(type);
+        if (path == null || !(path.getLeaf() instanceof ClassTree tree)) return Map.of();
+        final Map<Element, TreePath> paths = new HashMap<>();
+        for (final Tree member : tree.getMembers()) {
+            final TreePath memberPath = new TreePath(path, member);
+            final Element memberElement = trees.getElement(memberPath);
+            if (memberElement != null) {
+                paths.put(memberElement, memberPath);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Gets the element whose scope the references in the doc of the given element are resolved in.
+     * Only methods with type parameters have a scope of their own, other members use the scope of their class.
+     */
+    private static Element getScope(Element element) {
+        if (element instanceof TypeElement || (element instanceof ExecutableElement method && !method.getTypeParameters().isEmpty())) {
+            return element;
+        }
+        return element.getEnclosingElement();
+    }
+
+    private final class Renderer extends SimpleDocTreeVisitor<Void, Void> {
+        private final DocTreePath root;
+        private final Map<String, Optional<Element>> resolved;
+        private final StringBuilder out = new StringBuilder();
+        private final List<String> references = new ArrayList<>();
+
+        private Renderer(DocTreePath root, Map<String, Optional<Element>> resolved) {
+            this.root = root;
+            this.resolved = resolved;
+        }
+
+        void render(List<? extends DocTree> trees) {
+            for (final DocTree tree : trees) {
+                tree.accept(this, null);
+            }
+        }
+
+        // Block tags are always followed by a space, as that is what tells them apart from text
+        private void blockTag(String name, List<? extends DocTree> content) {
+            out.append('@').append(name).append(' ');
+            render(content);
+        }
+
+        @Override
+        protected Void defaultAction(DocTree node, Void unused) {
+            out.append(node);
+            return null;
+        }
+
+        @Override
+        public Void visitText(TextTree node, Void unused) {
+            out.append(node.getBody());
+            return null;
+        }
+
+        @Override
+        public Void visitLink(LinkTree node, Void unused) {
+            out.append("{@").append(node.getTagName()).append(' ');
+            reference(node.getReference());
+            if (!node.getLabel().isEmpty()) {
+                out.append(' ');
+                render(node.getLabel());
+            }
+            out.append('}');
+            return null;
+        }
+
+        @Override
+        public Void visitValue(ValueTree node, Void unused) {
+            out.append("{@value");
+            if (node.getReference() != null) {
+                out.append(' ');
+                reference(node.getReference());
+            }
+            out.append('}');
+            return null;
+        }
+
+        @Override
+        public Void visitSee(SeeTree node, Void unused) {
+            out.append("@see");
+            // A reference is separated from its label
+            boolean separate = true;
+            for (final DocTree reference : node.getReference()) {
+                if (separate) out.append(' ');
+                separate = reference instanceof ReferenceTree;
+                reference.accept(this, null);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitReference(ReferenceTree node, Void unused) {
+            reference(node);
+            return null;
+        }
+
+        @Override
+        public Void visitParam(ParamTree node, Void unused) {
+            out.append("@param ");
+            if (node.isTypeParameter()) {
+                out.append('<').append(node.getName().getName()).append('>');
+            } else {
+                out.append(node.getName().getName());
+            }
+            if (!node.getDescription().isEmpty()) {
+                out.append(' ');
+                render(node.getDescription());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitReturn(ReturnTree node, Void unused) {
+            if (node.isInline()) {
+                out.append("{@return ");
+                render(node.getDescription());
+                out.append('}');
+            } else {
+                blockTag("return", node.getDescription());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitDeprecated(DeprecatedTree node, Void unused) {
+            blockTag("deprecated", node.getBody());
+            return null;
+        }
+
+        @Override
+        public Void visitSince(SinceTree node, Void unused) {
+            blockTag("since", node.getBody());
+            return null;
+        }
+
+        @Override
+        public Void visitThrows(ThrowsTree node, Void unused) {
+            // Like the text engine, thrown exceptions are kept as written
+            out.append('@').append(node.getTagName()).append(' ').append(node.getExceptionName().getSignature());
+            if (!node.getDescription().isEmpty()) {
+                out.append(' ');
+                render(node.getDescription());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitUnknownBlockTag(UnknownBlockTagTree node, Void unused) {
+            blockTag(node.getTagName(), node.getContent());
+            return null;
+        }
+
+        @Override
+        public Void visitUnknownInlineTag(UnknownInlineTagTree node, Void unused) {
+            out.append("{@").append(node.getTagName()).append(' ');
+            render(node.getContent());
+            out.append('}');
+            return null;
+        }
+
+        private void reference(ReferenceTree reference) {
+            final String signature = reference.getSignature();
+            final Element target = resolved.computeIfAbsent(signature, k -> Optional.ofNullable(trees.getElement(new DocTreePath(root, reference)))).orElse(null);
+            if (target instanceof TypeElement type) {
+                out.append(qualified(type));
+            } else if (target != null && (target instanceof ExecutableElement || target.getKind().isField())
+                    && target.getEnclosingElement() instanceof TypeElement owner) {
+                out.append(qualified(owner)).append('#');
+                out.append(target.getKind() == ElementKind.CONSTRUCTOR ? owner.getSimpleName() : target.getSimpleName());
+                if (target instanceof ExecutableElement method && signature.indexOf('(') != -1) {
+                    out.append('(');
+                    final var parameters = method.getParameters();
+                    for (int i = 0; i < parameters.size(); i++) {
+                        if (i > 0) out.append(", ");
+                        final TypeMirror type = types.erasure(parameters.get(i).asType());
+                        if (method.isVarArgs() && i == parameters.size() - 1 && type instanceof ArrayType array) {
+                            out.append(typeName(array.getComponentType())).append("...");
+                        } else {
+                            out.append(typeName(type));
+                        }
+                    }
+                    out.append(')');
+                }
+            } else {
+                out.append(signature);
+            }
+        }
+
+        private String typeName(TypeMirror type) {
+            type = types.erasure(type);
+            if (type instanceof ArrayType array) {
+                return typeName(array.getComponentType()) + "[]";
+            }
+            if (type.getKind() == TypeKind.DECLARED) {
+                return qualified((TypeElement) types.asElement(type));
+            }
+            return type.toString();
+        }
+
+        private String qualified(TypeElement type) {
+            final String name = type.getQualifiedName().toString();
+            references.add(name);
+            return name;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package net.neoforged.javadoctor.collector;
+
+import net.neoforged.javadoctor.io.gson.GsonJDocIO;
+import net.neoforged.javadoctor.spec.ClassJavadoc;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Stores what was collected from each top-level class in a directory, so that an incremental compilation only needs to collect
+ * the docs of the recompiled classes. The other classes are only reprocessed from their class files, which have no doc comments,
+ * so their docs are taken from their fragments instead.
+ */
+class Fragments {
+    private final Path directory;
+    private final Set<String> seen = new HashSet<>();
+
+    Fragments(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * What was collected from a top-level class.
+     *
+     * @param doc        the docs of the class
+     * @param references the internal names of the classes referenced by the docs of the class, by their qualified names
+     * @param mixins     if the class is a mixin, the docs it merged into each of its targets, by the qualified names of the targets
+     */
+    record Fragment(@Nullable ClassJavadoc doc, Map<String, String> references, Map<String, ClassJavadoc> mixins) {
+        Fragment {
+            if (references == null) references = Map.of();
+            if (mixins == null) mixins = Map.of();
+        }
+    }
+
+    @Nullable
+    Fragment read(String className) throws IOException {
+        seen.add(className);
+        final Path path = directory.resolve(className + ".json");
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (final Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return GsonJDocIO.GSON.fromJson(reader, Fragment.class);
+        }
+    }
+
+    void write(String className, Fragment fragment) throws IOException {
+        seen.add(className);
+        Files.createDirectories(directory);
+        try (final Writer writer = Files.newBufferedWriter(directory.resolve(className + ".json"), StandardCharsets.UTF_8)) {
+            GsonJDocIO.GSON.toJson(fragment, writer);
+        }
+    }
+
+    /**
+     * Deletes the fragments of the classes which weren't read nor written during this compilation, as they have been deleted.
+     */
+    void deleteStale() throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        final List<Path> stale;
+        try (final Stream<Path> files = Files.list(directory)) {
+            stale = files.filter(path -> {
+                final String name = path.getFileName().toString();
+                return name.endsWith(".json") && !seen.contains(name.substring(0, name.length() - ".json".length()));
+            }).toList();
+        }
+        for (final Path path : stale) {
+            Files.delete(path);
+        }
+    }
+}
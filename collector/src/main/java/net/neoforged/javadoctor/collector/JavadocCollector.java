@@ -13,6 +13,8 @@ import javax.annotation.processing.Messager;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
@@ -22,20 +24,21 @@ import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class JavadocCollector {
-    public static final Pattern GENERIC = Pattern.compile("<(.+)>");
-    public static final Pattern LINKS = Pattern.compile("(@link|@linkplain|@see|@value) ([a-zA-Z0-9\\._]+)");
-
     private final Types types;
     private final Messager messager;
     private final Elements elements;
@@ -45,7 +48,21 @@ public class JavadocCollector {
 
     final Map<String, ClassJavadoc> javadocs = new HashMap<>();
     final Map<String, String> internalClassNames = new HashMap<>();
+    /**
+     * If not null, the qualified names of the classes referenced by the docs of each top-level class, by the name of that class.
+     */
+    @Nullable
+    Map<String, Set<String>> referencesByClass;
+    /**
+     * If not null, doc comments are read from their doc trees by this renderer rather than expanded from their text.
+     */
+    @Nullable
+    DocTreeRenderer docTreeRenderer;
     private final DocFQNExpander fqnExpander;
+    // The implicitly imported types of java.lang, by their simple names, as seen by the compiled code rather than by the processor
+    private final Supplier<Map<String, String>> javaLangTypes;
+    // All the classes of a top-level class share its compilation unit and children, so their imports are only indexed once per round
+    private final Map<TypeElement, Imports> importsByTopLevel = new HashMap<>();
 
     public JavadocCollector(Types types, Messager messager, Elements elements, Trees trees) {
         this.types = types;
@@ -55,14 +72,41 @@ public class JavadocCollector {
 
         this.names = new Names(types, elements);
         this.fqnExpander = new DocFQNExpander(elements, names, internalClassNames);
+        this.javaLangTypes = memoized(() -> {
+            final PackageElement javaLang = elements.getPackageElement("java.lang");
+            if (javaLang == null) return Map.of();
+            return ElementFilter.typesIn(javaLang.getEnclosedElements()).stream()
+                    .filter(type -> type.getModifiers().contains(Modifier.PUBLIC))
+                    .collect(Collectors.toMap(type -> type.getSimpleName().toString(), type -> type.getQualifiedName().toString()));
+        });
     }
 
-    public void collectMixin(TypeElement typeElement, MixinTypes types) {
-        final Imports imports = Imports.fromTree(trees.getPath(typeElement), typeElement);
+    /**
+     * Clears what is cached about the elements of the current round, as elements shouldn't be used across rounds.
+     */
+    public void clearCaches() {
+        importsByTopLevel.clear();
+        names.clearCaches();
+        if (docTreeRenderer != null) {
+            docTreeRenderer.clearCaches();
+        }
+    }
+
+    private Imports getImports(TypeElement type) {
+        return importsByTopLevel.computeIfAbsent(Hierarchy.getTopLevel(type), topLevel -> Imports.fromTree(trees.getPath(topLevel), topLevel, javaLangTypes));
+    }
+
+    /**
+     * Collects the docs of the mixin and merges them into the docs of its targets.
+     *
+     * @return the docs merged into each target, by the qualified names of the targets
+     */
+    public Map<String, ClassJavadoc> collectMixin(TypeElement typeElement, MixinTypes types) {
+        final Imports imports = getImports(typeElement);
         final AnnotationUtils mixinAn = types.getAnnotation(typeElement, types.Mixin);
         final List<TypeElement> mixind = mixinAn.getClasses("value");
 
-        final JavadocEntry clazzdoc = createJavadoc(typeElement, imports, null, ParameterProvider.provider(typeElement.getTypeParameters()));
+        final JavadocEntry clazzdoc = createJavadoc(typeElement, imports, null, typeElement.getTypeParameters());
 
         final Map<String, JavadocEntry> methods = new HashMap<>();
         final Map<String, JavadocEntry> fields = new HashMap<>();
@@ -72,7 +116,7 @@ public class JavadocCollector {
                 final ExecutableElement executableElement = (ExecutableElement) element;
                 methods.put(
                         executableElement.getSimpleName().toString() + names.getDesc(executableElement),
-                        createJavadoc(executableElement, imports, ParameterProvider.provider(executableElement.getParameters()), ParameterProvider.provider(executableElement.getTypeParameters()))
+                        createJavadoc(executableElement, imports, executableElement.getParameters(), executableElement.getTypeParameters())
                 );
             } else if (element.getKind() == ElementKind.FIELD && (types.getAnnotation(element, types.Shadow) != null || types.getAnnotation(element, types.Unique) != null)) {
                 fields.put(
@@ -82,9 +126,15 @@ public class JavadocCollector {
             }
         });
 
+        final Map<String, ClassJavadoc> merged = new LinkedHashMap<>();
         if (!methods.isEmpty() || !fields.isEmpty() || clazzdoc != null) {
-            mixind.forEach(mx -> mergeWithExisting(mx, new ClassJavadoc(clazzdoc, methods.isEmpty() ? null : methods, fields.isEmpty() ? null : fields, null)));
+            mixind.forEach(mx -> {
+                final ClassJavadoc doc = new ClassJavadoc(clazzdoc, methods.isEmpty() ? null : methods, fields.isEmpty() ? null : fields, null);
+                mergeWithExisting(mx, doc);
+                merged.put(mx.getQualifiedName().toString(), doc);
+            });
         }
+        return merged;
     }
 
     public void mergeWithExisting(TypeElement type, ClassJavadoc doc) {
@@ -102,69 +152,183 @@ public class JavadocCollector {
         }
 
         final ClassJavadoc newDoc = doc.merge(parentDoc);
-        final ClassJavadoc root = javadocs.computeIfAbsent(parents.get(0).getQualifiedName().toString(), s -> new ClassJavadoc());
-        ClassJavadoc toMergeWith = root;
-        Map<String, ClassJavadoc> inners = root.innerClasses();
-        for (int i = 1; i < parents.size(); i++) {
-            inners = toMergeWith.innerClasses();
-            toMergeWith = toMergeWith.innerClasses().computeIfAbsent(parents.get(i).getSimpleName().toString(), s -> new ClassJavadoc());
-        }
+        final String rootName = parents.get(0).getQualifiedName().toString();
         if (parents.size() == 1) {
-            javadocs.put(parents.get(0).getQualifiedName().toString(), newDoc);
+            javadocs.put(rootName, newDoc);
         } else {
-            inners.put(parents.get(parents.size() - 1).getSimpleName().toString(), doc);
+            // Docs are immutable, so rebuild every enclosing class down to the replaced one
+            javadocs.put(rootName, withInnerClass(javadocs.getOrDefault(rootName, new ClassJavadoc()), parents, 1, doc));
         }
     }
 
+    private static ClassJavadoc withInnerClass(ClassJavadoc parentDoc, List<TypeElement> parents, int index, ClassJavadoc doc) {
+        final String name = parents.get(index).getSimpleName().toString();
+        if (index == parents.size() - 1) {
+            return parentDoc.withInnerClass(name, doc);
+        }
+        final ClassJavadoc inner = parentDoc.innerClasses().get(name);
+        return parentDoc.withInnerClass(name, withInnerClass(inner == null ? new ClassJavadoc() : inner, parents, index + 1, doc));
+    }
+
     public void collect(TypeElement typeElement) {
-        final ClassJavadoc classJavadoc = buildClass(typeElement);
+        addClass(typeElement, buildClass(typeElement));
+    }
+
+    /**
+     * Collects the docs of the given types like {@link #collect(TypeElement)}, but processes the doc comments of each type on the executor.
+     * As javac isn't thread-safe, doc comments and everything needed to process them are read upfront on the calling thread,
+     * and warnings and referenced classes are reported back on it in the same order as when collecting sequentially.
+     */
+    public void collect(List<TypeElement> typeElements, Executor executor) {
+        final List<ClassDocs<RawDoc>> classes = new ArrayList<>(typeElements.size());
+        final List<List<RawDoc>> rawDocs = new ArrayList<>(typeElements.size());
+        final List<CompletableFuture<List<ProcessedDoc>>> processedDocs = new ArrayList<>(typeElements.size());
+        for (final TypeElement typeElement : typeElements) {
+            final List<RawDoc> docs = new ArrayList<>();
+            classes.add(scanClass(typeElement, raw -> {
+                raw.imports().resolve();
+                docs.add(raw);
+                return raw;
+            }));
+            rawDocs.add(docs);
+            processedDocs.add(CompletableFuture.supplyAsync(() -> docs.stream().map(this::process).toList(), executor));
+        }
+
+        for (int i = 0; i < typeElements.size(); i++) {
+            final List<RawDoc> docs = rawDocs.get(i);
+            final List<ProcessedDoc> processed = processedDocs.get(i).join();
+            final Map<RawDoc, JavadocEntry> entries = new IdentityHashMap<>(docs.size());
+            for (int j = 0; j < docs.size(); j++) {
+                entries.put(docs.get(j), apply(docs.get(j), processed.get(j)));
+            }
+            addClass(typeElements.get(i), classes.get(i).resolve(entries::get));
+        }
+    }
+
+    private void addClass(TypeElement typeElement, ClassJavadoc classJavadoc) {
         if (!classJavadoc.isEmpty()) {
             javadocs.put(typeElement.getQualifiedName().toString(), classJavadoc);
         }
     }
 
     public ClassJavadoc buildClass(TypeElement clazz) {
-        final Imports imports = Imports.fromTree(trees.getPath(clazz), clazz);
-        final JavadocEntry clazzdoc = createJavadoc(clazz, imports, clazz.getKind() == ElementKind.RECORD ? ParameterProvider.provider(ElementFilter.recordComponentsIn(clazz.getEnclosedElements())) : null, ParameterProvider.provider(clazz.getTypeParameters()));
-        Map<String, JavadocEntry> methods = new HashMap<>();
-        Map<String, JavadocEntry> fields = new HashMap<>();
-        Map<String, ClassJavadoc> innerClasses = new HashMap<>();
+        return scanClass(clazz, raw -> apply(raw, process(raw))).resolve(Function.identity());
+    }
+
+    private <D> ClassDocs<D> scanClass(TypeElement clazz, Function<RawDoc, D> docFactory) {
+        final Imports imports = getImports(clazz);
+        final D clazzdoc = createDoc(readDoc(clazz, imports, clazz.getKind() == ElementKind.RECORD ? ElementFilter.recordComponentsIn(clazz.getEnclosedElements()) : null, clazz.getTypeParameters()), docFactory);
+        final Map<String, D> methods = new HashMap<>();
+        final Map<String, D> fields = new HashMap<>();
+        final Map<String, ClassDocs<D>> innerClasses = new HashMap<>();
 
         clazz.getEnclosedElements().forEach(element -> {
             if (element.getKind() == ElementKind.METHOD || element.getKind() == ElementKind.CONSTRUCTOR) {
                 final ExecutableElement executableElement = (ExecutableElement) element;
                 methods.put(
                         executableElement.getSimpleName().toString() + names.getDesc(executableElement),
-                        createJavadoc(executableElement, imports, ParameterProvider.provider(executableElement.getParameters()), ParameterProvider.provider(executableElement.getTypeParameters()))
+                        createDoc(readDoc(executableElement, imports, executableElement.getParameters(), executableElement.getTypeParameters()), docFactory)
                 );
             } else if (element.getKind() == ElementKind.FIELD || element.getKind() == ElementKind.ENUM_CONSTANT) {
                 fields.put(
                         element.getSimpleName().toString() + ":" + names.getParamDescriptor(element.asType()),
-                        createJavadoc(element, imports, null, null)
+                        createDoc(readDoc(element, imports, null, null), docFactory)
                 );
             } else if (element instanceof TypeElement typeElement) {
-                final ClassJavadoc innerDoc = buildClass(typeElement);
-                if (!innerDoc.isEmpty())
-                    innerClasses.put(typeElement.getSimpleName().toString(), innerDoc);
+                innerClasses.put(typeElement.getSimpleName().toString(), scanClass(typeElement, docFactory));
             }
         });
 
-        methods.values().removeIf(Objects::isNull);
-        fields.values().removeIf(Objects::isNull);
+        return new ClassDocs<>(clazzdoc, methods, fields, innerClasses);
+    }
 
-        return new ClassJavadoc(clazzdoc, methods.isEmpty() ? null : methods, fields.isEmpty() ? null : fields, innerClasses);
+    @Nullable
+    private static <D> D createDoc(@Nullable RawDoc raw, Function<RawDoc, D> docFactory) {
+        return raw == null ? null : docFactory.apply(raw);
+    }
+
+    /**
+     * The docs of a class, before they are turned into a {@link ClassJavadoc}.
+     */
+    private record ClassDocs<D>(@Nullable D clazz, Map<String, D> methods, Map<String, D> fields, Map<String, ClassDocs<D>> innerClasses) {
+        ClassJavadoc resolve(Function<D, JavadocEntry> resolver) {
+            final Map<String, JavadocEntry> methods = resolveEntries(this.methods, resolver);
+            final Map<String, JavadocEntry> fields = resolveEntries(this.fields, resolver);
+            final Map<String, ClassJavadoc> innerClasses = new HashMap<>();
+            this.innerClasses.forEach((name, inner) -> {
+                final ClassJavadoc innerDoc = inner.resolve(resolver);
+                if (!innerDoc.isEmpty())
+                    innerClasses.put(name, innerDoc);
+            });
+            return new ClassJavadoc(clazz == null ? null : resolver.apply(clazz), methods.isEmpty() ? null : methods, fields.isEmpty() ? null : fields, innerClasses);
+        }
+
+        private static <D> Map<String, JavadocEntry> resolveEntries(Map<String, D> docs, Function<D, JavadocEntry> resolver) {
+            final Map<String, JavadocEntry> entries = new HashMap<>();
+            docs.forEach((key, doc) -> {
+                final JavadocEntry entry = doc == null ? null : resolver.apply(doc);
+                if (entry != null) {
+                    entries.put(key, entry);
+                }
+            });
+            return entries;
+        }
     }
 
-    // TODO - parameters: maybe replace `{@code <paramname>}` with `{@code param<index>}` to be then replaced with the actual param name when injected.
     @Nullable
-    private JavadocEntry createJavadoc(Element collectingElement, Imports imports, @Nullable ParameterProvider paramsGetter, @Nullable ParameterProvider genericParamsGetter) {
-        String docComment = elements.getDocComment(collectingElement);
+    private JavadocEntry createJavadoc(Element collectingElement, Imports imports, @Nullable List<? extends Element> parameters, @Nullable List<? extends Element> typeParameters) {
+        final RawDoc raw = readDoc(collectingElement, imports, parameters, typeParameters);
+        return raw == null ? null : apply(raw, process(raw));
+    }
+
+    @Nullable
+    private RawDoc readDoc(Element collectingElement, Imports imports, @Nullable List<? extends Element> parameters, @Nullable List<? extends Element> typeParameters) {
+        final ParameterProvider paramsGetter = parameters == null ? null : ParameterProvider.provider(parameters);
+        final ParameterProvider genericParamsGetter = typeParameters == null ? null : ParameterProvider.provider(typeParameters);
+        if (docTreeRenderer != null) {
+            final DocTreeRenderer.RenderedDoc rendered = docTreeRenderer.render(collectingElement);
+            if (rendered == null || rendered.comment().isBlank()) return null;
+            return new RawDoc(collectingElement, rendered.comment(), imports, paramsGetter, genericParamsGetter, rendered.references());
+        }
+        final String docComment = elements.getDocComment(collectingElement);
         if (docComment == null || docComment.isBlank()) return null;
-        docComment = fqnExpander.expand(collectingElement instanceof TypeElement typeElement ? typeElement : (TypeElement) collectingElement.getEnclosingElement(), docComment, imports);
-        docComment = LINKS.matcher(docComment).replaceAll(matchResult -> matchResult.group(1) + " " + imports.getQualified(matchResult.group(2)));
+        return new RawDoc(collectingElement, docComment, imports, paramsGetter, genericParamsGetter, null);
+    }
+
+    /**
+     * Reports the warnings and records the referenced classes of a processed doc, which needs javac.
+     */
+    @Nullable
+    private JavadocEntry apply(RawDoc raw, ProcessedDoc processed) {
+        processed.warnings().forEach(warning -> messager.printMessage(Diagnostic.Kind.WARNING, warning, raw.element()));
+        processed.references().forEach(fqnExpander::addReference);
+        if (referencesByClass != null && !processed.references().isEmpty()) {
+            final TypeElement owner = raw.element() instanceof TypeElement typeElement ? typeElement : (TypeElement) raw.element().getEnclosingElement();
+            referencesByClass.computeIfAbsent(Hierarchy.getTopLevel(owner).getQualifiedName().toString(), k -> new LinkedHashSet<>())
+                    .addAll(processed.references());
+        }
+        return processed.entry();
+    }
+
+    /**
+     * A doc comment read from javac, with everything needed to process it without javac.
+     *
+     * @param references if not null, the comment was rendered from its doc tree with its references already expanded, and these are the referenced classes
+     */
+    private record RawDoc(Element element, String comment, Imports imports, @Nullable ParameterProvider paramsGetter, @Nullable ParameterProvider genericParamsGetter,
+                          @Nullable List<String> references) {}
+
+    private record ProcessedDoc(@Nullable JavadocEntry entry, List<String> warnings, List<String> references) {}
+
+    // TODO - parameters: maybe replace `{@code <paramname>}` with `{@code param<index>}` to be then replaced with the actual param name when injected.
+    private ProcessedDoc process(RawDoc raw) {
+        final ParameterProvider paramsGetter = raw.paramsGetter();
+        final ParameterProvider genericParamsGetter = raw.genericParamsGetter();
+        final List<String> warnings = new ArrayList<>();
+        final List<String> references = new ArrayList<>();
         final List<String> docs = new ArrayList<>();
         Map<String, List<String>> tags = new HashMap<>();
-        final var params = walk(docComment, new JDocWalker<Map.Entry<String[], String[]>>() {
+        final var params = walk(raw, references::add, new JDocWalker<Map.Entry<String[], String[]>>() {
             String[] parameters = null;
             String[] typeParameters = null;
 
@@ -176,33 +340,34 @@ public class JavadocCollector {
             @Override
             public void onTag(String tag, String line) {
                 if (tag.equals("param")) {
-                    final String[] splitWithParam = line.split(" ", 2);
-                    if (splitWithParam.length != 2) {
-                        messager.printMessage(Diagnostic.Kind.WARNING, "Found incomplete param tag!", collectingElement);
+                    final int nameEnd = line.indexOf(' ');
+                    if (nameEnd == -1) {
+                        warnings.add("Found incomplete param tag!");
                         return;
                     }
-                    final String paramName = splitWithParam[0];
-                    final Matcher generic = GENERIC.matcher(paramName);
-                    if (generic.find()) {
+                    final String paramName = line.substring(0, nameEnd);
+                    final String description = line.substring(nameEnd + 1).trim();
+                    final String genericName = getGenericName(paramName);
+                    if (genericName != null) {
                         if (genericParamsGetter == null) {
-                            messager.printMessage(Diagnostic.Kind.WARNING, "Found generic parameter but the element does not support generic parameters!", collectingElement);
+                            warnings.add("Found generic parameter but the element does not support generic parameters!");
                         } else {
-                            final int idx = genericParamsGetter.getIndex(generic.group(1));
+                            final int idx = genericParamsGetter.getIndex(genericName);
                             if (idx == -1) {
-                                messager.printMessage(Diagnostic.Kind.WARNING, "Unknown generic parameter named '" + generic.group(1) + "'", collectingElement);
+                                warnings.add("Unknown generic parameter named '" + genericName + "'");
                             } else {
-                                (typeParameters == null ? (typeParameters = genericParamsGetter.provide()) : typeParameters)[idx] = splitWithParam[1].trim();
+                                (typeParameters == null ? (typeParameters = genericParamsGetter.provide()) : typeParameters)[idx] = description;
                             }
                         }
                     } else {
                         if (paramsGetter == null) {
-                            messager.printMessage(Diagnostic.Kind.WARNING, "Found named parameter but the element does not support named parameters!", collectingElement);
+                            warnings.add("Found named parameter but the element does not support named parameters!");
                         } else {
                             final int idx = paramsGetter.getIndex(paramName);
                             if (idx == -1) {
-                                messager.printMessage(Diagnostic.Kind.WARNING, "Unknown parameter named '" + paramName + "'", collectingElement);
+                                warnings.add("Unknown parameter named '" + paramName + "'");
                             } else {
-                                (parameters == null ? (parameters = paramsGetter.provide()) : parameters)[idx] = splitWithParam[1].trim();
+                                (parameters == null ? (parameters = paramsGetter.provide()) : parameters)[idx] = description;
                             }
                         }
                     }
@@ -219,38 +384,95 @@ public class JavadocCollector {
         });
         final String finalDoc = String.join("\n", docs).trim();
         final JavadocEntry entry = new JavadocEntry(finalDoc.isBlank() ? null : finalDoc, tags.isEmpty() ? null : tags, params.getKey(), params.getValue());
-        return entry.isEmpty() ? null : entry;
+        return new ProcessedDoc(entry.isEmpty() ? null : entry, warnings, references);
     }
 
-    private <T> T walk(String comment, JDocWalker<T> walker) {
-        StringBuilder current = new StringBuilder();
-        String tagName = null;
-        final String[] lines = comment.split("\n");
-        if (lines.length == 0) return walker.finish();
-        int indentAmount = 0;
-        final String initialLine = lines[0];
-        for (int i = 0; i < initialLine.length(); i++) {
-            if (initialLine.charAt(i) == ' ') {
-                indentAmount++;
-            } else {
-                break;
+    /**
+     * Gets the name of the generic parameter named like {@code <T>} by the param name, which doesn't span more than a line.
+     */
+    @Nullable
+    private static String getGenericName(String paramName) {
+        for (int start = paramName.indexOf('<'); start != -1; start = paramName.indexOf('<', start + 1)) {
+            int lineEnd = start + 1;
+            while (lineEnd < paramName.length() && !isLineTerminator(paramName.charAt(lineEnd))) {
+                lineEnd++;
+            }
+            final int end = paramName.lastIndexOf('>', lineEnd - 1);
+            if (end > start + 1) {
+                return paramName.substring(start + 1, end);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private <T> T walk(RawDoc raw, Consumer<String> references, JDocWalker<T> walker) {
+        final DocLines<T> lines = new DocLines<>(walker);
+        if (raw.references() == null) {
+            fqnExpander.expand(raw.comment(), raw.imports(), references, lines);
+        } else {
+            raw.references().forEach(references);
+            final String comment = raw.comment();
+            int start = 0;
+            for (int end = comment.indexOf('\n'); end != -1; end = comment.indexOf('\n', start)) {
+                lines.accept(comment.substring(start, end));
+                start = end + 1;
+            }
+            lines.accept(comment.substring(start));
+        }
+        return lines.finish();
+    }
+
+    /**
+     * Passes the lines of a doc to a walker as they are expanded, splitting the block tags from the description.
+     */
+    private static final class DocLines<T> implements Consumer<String> {
+        private final JDocWalker<T> walker;
+        private int indentAmount = -1;
+        // Empty lines are held back until a line follows them, as trailing empty lines are ignored
+        private int emptyLines;
+        private StringBuilder current;
+        private String tagName;
+
+        private DocLines(JDocWalker<T> walker) {
+            this.walker = walker;
+        }
+
+        @Override
+        public void accept(String line) {
+            if (indentAmount == -1) {
+                indentAmount = 0;
+                while (indentAmount < line.length() && line.charAt(indentAmount) == ' ') {
+                    indentAmount++;
+                }
+            }
+            if (line.isEmpty()) {
+                emptyLines++;
+                return;
             }
+            for (; emptyLines > 0; emptyLines--) {
+                onLine("");
+            }
+            onLine(line);
         }
 
-        for (String line : lines) {
+        private void onLine(String line) {
             if (line.length() >= indentAmount) {
                 line = line.substring(indentAmount);
             }
 
             if (line.startsWith("@")) {
-                final String[] split = line.substring(1).split(" ", 2);
-                if (split.length == 2) {
+                final int nameEnd = line.indexOf(' ', 1);
+                if (nameEnd != -1) {
                     if (tagName != null) {
                         walker.onTag(tagName, current.toString().trim());
                     }
-                    tagName = split[0];
-                    current = new StringBuilder().append(split[1]);
-                    continue;
+                    tagName = line.substring(1, nameEnd);
+                    current = new StringBuilder().append(line, nameEnd + 1, line.length());
+                    return;
                 }
             }
 
@@ -266,10 +488,12 @@ public class JavadocCollector {
             }
         }
 
-        if (tagName != null) {
-            walker.onTag(tagName, current.toString().trim());
+        T finish() {
+            if (tagName != null) {
+                walker.onTag(tagName, current.toString().trim());
+            }
+            return walker.finish();
         }
-        return walker.finish();
     }
 
     public interface ParameterProvider {
@@ -277,19 +501,20 @@ public class JavadocCollector {
         int getIndex(String name);
 
         static ParameterProvider provider(List<? extends Element> generics) {
+            // Read the names eagerly, so that the provider can be used without javac
+            final List<String> parameterTypes = generics.stream()
+                    .map(t -> t.getSimpleName().toString()).toList();
             return new ParameterProvider() {
                 @Override
                 public String[] provide() {
-                    final String[] array = new String[generics.size()];
+                    final String[] array = new String[parameterTypes.size()];
                     Arrays.fill(array, null);
                     return array;
                 }
 
-                private List<String> parameterTypes;
                 @Override
                 public int getIndex(String name) {
-                    return (parameterTypes == null ? (parameterTypes = generics.stream()
-                            .map(t -> t.getSimpleName().toString()).toList()) : parameterTypes).indexOf(name);
+                    return parameterTypes.indexOf(name);
                 }
             };
         }
@@ -304,7 +529,20 @@ public class JavadocCollector {
 
     public interface Imports {
         String getQualified(String inputName);
-        static Imports fromTree(TreePath tree, TypeElement owner) {
+
+        /**
+         * Gets the qualified name of the class of the compilation unit declaring the given member,
+         * which is either a method name or a field name prefixed with {@code #}.
+         */
+        @Nullable
+        String getMemberOwner(String member);
+
+        /**
+         * Resolves everything these imports look up lazily, after which they don't use javac anymore.
+         */
+        void resolve();
+
+        static Imports fromTree(TreePath tree, TypeElement owner, Supplier<Map<String, String>> javaLangTypes) {
             final Supplier<Map<String, String>> imports = memoized(() -> {
                 final Map<String, String> i = new HashMap<>();
                 tree.getCompilationUnit().getImports().forEach(importTree -> {
@@ -318,26 +556,50 @@ public class JavadocCollector {
                 return i;
             });
             final TypeElement finalTopLevel = Hierarchy.getTopLevel(owner);
-            final Supplier<Map<String, TypeElement>> topChildren = memoized(() -> Stream.concat(Stream.of(finalTopLevel), Hierarchy.walkChildren(finalTopLevel))
-                    .collect(Collectors.toMap(it -> it.getSimpleName().toString(), Function.identity())));
-            return inputName -> {
-                final String last = inputName.substring(0, lastReferenceLocation(inputName));
-                final String imp = imports.get().get(last);
-                if (imp != null) {
-                    return imp;
-                }
-                if (!inputName.startsWith("#")) {
-                    final TypeElement child = topChildren.get().get(last); // TODO - this isn't flawless, it will find the wrong one when there's a lot of nesting of classes with the same name
-                    if (child != null) {
-                        return child.getQualifiedName().toString();
+            final Supplier<Map<String, String>> topChildren = memoized(() -> Stream.concat(Stream.of(finalTopLevel), Hierarchy.walkChildren(finalTopLevel))
+                    .collect(Collectors.toMap(it -> it.getSimpleName().toString(), it -> it.getQualifiedName().toString())));
+            final Supplier<Map<String, String>> members = memoized(() -> {
+                final Map<String, String> memberMap = new HashMap<>();
+                Stream.concat(Stream.of(finalTopLevel), Hierarchy.walkChildren(finalTopLevel))
+                        .forEach(t -> t.getEnclosedElements().stream().filter(f -> f.getKind() == ElementKind.ENUM_CONSTANT || f.getKind() == ElementKind.FIELD || f.getKind() == ElementKind.METHOD)
+                                .forEach(element -> memberMap.put(
+                                        element.getKind() == ElementKind.METHOD ? element.getSimpleName().toString() : "#" + element.getSimpleName(),
+                                        t.getQualifiedName().toString()
+                                )));
+                return memberMap;
+            });
+            return new Imports() {
+                @Override
+                public String getQualified(String inputName) {
+                    final String last = inputName.substring(0, lastReferenceLocation(inputName));
+                    final String imp = imports.get().get(last);
+                    if (imp != null) {
+                        return imp;
+                    }
+                    if (!inputName.startsWith("#")) {
+                        final String child = topChildren.get().get(last); // TODO - this isn't flawless, it will find the wrong one when there's a lot of nesting of classes with the same name
+                        if (child != null) {
+                            return child;
+                        }
                     }
+
+                    // Fallback to the default imports
+                    final String javaLangType = javaLangTypes.get().get(inputName);
+                    return javaLangType == null ? inputName : javaLangType;
                 }
 
-                // Fallback to the default imports
-                try {
-                    return Class.forName("java.lang." + inputName).getName();
-                } catch (Exception exception) {
-                    return inputName;
+                @Nullable
+                @Override
+                public String getMemberOwner(String member) {
+                    return members.get().get(member); // this isn't flawless, it will find the wrong one when there's a lot of nesting of classes with the same member names
+                }
+
+                @Override
+                public void resolve() {
+                    javaLangTypes.get();
+                    imports.get();
+                    topChildren.get();
+                    members.get();
                 }
             };
         }
@@ -1,11 +1,19 @@
 package net.neoforged.javadoctor.collector;
 
+import com.google.gson.stream.JsonWriter;
+import com.sun.source.util.DocTrees;
 import com.sun.source.util.Trees;
+import net.neoforged.javadoctor.collector.Fragments.Fragment;
+import net.neoforged.javadoctor.io.binary.BinaryJDocIO;
 import net.neoforged.javadoctor.io.gson.GsonJDocIO;
+import net.neoforged.javadoctor.spec.ClassJavadoc;
 import net.neoforged.javadoctor.spec.DocReferences;
 import net.neoforged.javadoctor.spec.JavadoctorInformation;
+import net.neoforged.javadoctor.spec.ShardManifest;
+import org.jetbrains.annotations.Nullable;
 
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedOptions;
@@ -16,17 +24,106 @@ import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
 import javax.tools.StandardLocation;
-import java.io.Writer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Predicate;
 
 @SupportedAnnotationTypes("*")
-@SupportedOptions("collectionPackages")
+@SupportedOptions({"collectionPackages", "collectionThreads", "exhaustiveCollection", "mixinCollect", "fragmentsDirectory", "collectionEngine", "shardedOutput"})
 @SupportedSourceVersion(SourceVersion.RELEASE_17)
 public class Processor extends AbstractProcessor {
+    private static final String SHARDS_DIRECTORY = "javadoctor/";
+
+    private Trees trees;
+    private JavadocCollector collector;
+    @Nullable
+    private Fragments fragments;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        final ProcessingEnvironment javacEnv = unwrap(processingEnv);
+        this.trees = Trees.instance(javacEnv);
+        this.collector = new JavadocCollector(processingEnv.getTypeUtils(), processingEnv.getMessager(), processingEnv.getElementUtils(), trees);
+
+        final String fragmentsDirectory = processingEnv.getOptions().get("fragmentsDirectory");
+        if (fragmentsDirectory != null) {
+            this.fragments = new Fragments(Path.of(fragmentsDirectory));
+            this.collector.referencesByClass = new HashMap<>();
+        }
+
+        // The text engine expands references by guessing them from the imports, the doc tree engine uses the references resolved by javac
+        final String engine = processingEnv.getOptions().getOrDefault("collectionEngine", "text");
+        if (engine.equals("doctree")) {
+            this.collector.docTreeRenderer = new DocTreeRenderer(DocTrees.instance(javacEnv), processingEnv.getTypeUtils());
+        } else if (!engine.equals("text")) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unknown collection engine '" + engine + "', expected 'text' or 'doctree'");
+        }
+    }
+
+    /**
+     * Finds the environment of javac, as Gradle wraps the one it gives to incremental processors to track what they generate,
+     * while the tree utilities only accept the one of javac. Falls back to the given environment if it wraps none.
+     */
+    private static ProcessingEnvironment unwrap(ProcessingEnvironment processingEnv) {
+        ProcessingEnvironment current = processingEnv;
+        while (!current.getClass().getName().equals("com.sun.tools.javac.processing.JavacProcessingEnvironment")) {
+            final ProcessingEnvironment delegate = getDelegate(current);
+            if (delegate == null) {
+                return processingEnv;
+            }
+            current = delegate;
+        }
+        return current;
+    }
+
+    @Nullable
+    private static ProcessingEnvironment getDelegate(ProcessingEnvironment processingEnv) {
+        for (Class<?> type = processingEnv.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                final Field field = type.getDeclaredField("delegate");
+                if (ProcessingEnvironment.class.isAssignableFrom(field.getType())) {
+                    field.setAccessible(true);
+                    return (ProcessingEnvironment) field.get(processingEnv);
+                }
+            } catch (NoSuchFieldException ignored) {
+                // Look in the superclass
+            } catch (ReflectiveOperationException | RuntimeException exception) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        final Set<String> options = new HashSet<>(super.getSupportedOptions());
+        // The docs of the classes which Gradle doesn't recompile can only be found when fragments are stored
+        if (isInitialized() && processingEnv.getOptions().containsKey("fragmentsDirectory")) {
+            options.add("org.gradle.annotation.processing.aggregating");
+        }
+        return options;
+    }
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-        if (roundEnv.processingOver()) return false;
+        if (roundEnv.processingOver()) {
+            write();
+            return false;
+        }
+        collector.clearCaches();
         final String[] toCollect = processingEnv.getOptions().get("collectionPackages").split(",");
         final Predicate<String> isCollectible = s -> {
             for (final String c : toCollect) {
@@ -37,31 +134,189 @@ public class Processor extends AbstractProcessor {
             return false;
         };
 
-        final JavadocCollector collector = new JavadocCollector(processingEnv.getTypeUtils(), processingEnv.getMessager(), processingEnv.getElementUtils(), Trees.instance(processingEnv));
+        final List<TypeElement> collectible;
+        if (Boolean.parseBoolean(processingEnv.getOptions().getOrDefault("exhaustiveCollection", "false"))) {
+            // Scan every package visible to the compiler, including the ones of the JDK and the classpath
+            collectible = processingEnv.getElementUtils().getAllModuleElements()
+                    .stream().flatMap(el -> el.getEnclosedElements().stream().map(PackageElement.class::cast))
+                    .filter(pkg -> isCollectible.test(pkg.getQualifiedName().toString()))
+                    .flatMap(pkg -> pkg.getEnclosedElements().stream().map(TypeElement.class::cast))
+                    .distinct()
+                    .toList();
+        } else {
+            // Only the classes being compiled have doc comments, so there is no need to look further than the root elements
+            collectible = roundEnv.getRootElements().stream()
+                    .filter(el -> el instanceof TypeElement)
+                    .map(TypeElement.class::cast)
+                    .filter(type -> isCollectible.test(processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString()))
+                    .toList();
+        }
+
+        // When compiling incrementally, the classes which aren't recompiled are only reprocessed, so their docs are taken from their fragments
+        final Map<String, Fragment> reprocessed = new HashMap<>();
+        final List<TypeElement> sources = new ArrayList<>();
+        for (final TypeElement type : collectible) {
+            if (isReprocessed(type, roundEnv)) {
+                final Fragment fragment = readFragment(type, reprocessed);
+                if (fragment != null) {
+                    if (fragment.doc() != null) {
+                        collector.javadocs.put(type.getQualifiedName().toString(), fragment.doc());
+                    }
+                    fragment.references().forEach(collector.internalClassNames::putIfAbsent);
+                }
+            } else {
+                sources.add(type);
+            }
+        }
+
+        final int threads = Integer.parseInt(processingEnv.getOptions().getOrDefault("collectionThreads", "1"));
+        if (threads > 1) {
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                collector.collect(sources, executor);
+            } finally {
+                executor.shutdownNow();
+            }
+        } else {
+            sources.forEach(collector::collect);
+        }
 
-        processingEnv.getElementUtils().getAllModuleElements()
-                .stream().flatMap(el -> el.getEnclosedElements().stream().map(PackageElement.class::cast))
-                .filter(pkg -> isCollectible.test(pkg.getQualifiedName().toString()))
-                .flatMap(pkg -> pkg.getEnclosedElements().stream().map(TypeElement.class::cast))
-                .distinct()
-                .forEach(collector::collect);
+        // The fragments need the docs of the classes before any mixin is merged into them
+        final Map<String, ClassJavadoc> sourceDocs = new LinkedHashMap<>();
+        sources.forEach(type -> sourceDocs.put(type.getQualifiedName().toString(), collector.javadocs.get(type.getQualifiedName().toString())));
+        final Map<String, Map<String, ClassJavadoc>> mixins = new HashMap<>();
 
         if (Boolean.parseBoolean(processingEnv.getOptions().getOrDefault("mixinCollect", "true"))) {
             final MixinTypes types = new MixinTypes(processingEnv.getTypeUtils(), processingEnv.getElementUtils());
             roundEnv.getElementsAnnotatedWith(types.Mixin).stream()
                     .filter(el -> el.getKind() == ElementKind.CLASS)
                     .map(TypeElement.class::cast)
-                    .forEach(type -> collector.collectMixin(type, types));
+                    .forEach(type -> {
+                        if (isReprocessed(type, roundEnv)) {
+                            final Fragment fragment = readFragment(type, reprocessed);
+                            if (fragment != null) {
+                                fragment.mixins().forEach((target, doc) -> {
+                                    final TypeElement targetType = processingEnv.getElementUtils().getTypeElement(target);
+                                    if (targetType != null) {
+                                        collector.mergeWithExisting(targetType, doc);
+                                    }
+                                });
+                            }
+                        } else {
+                            mixins.put(type.getQualifiedName().toString(), collector.collectMixin(type, types));
+                            sourceDocs.putIfAbsent(type.getQualifiedName().toString(), null);
+                        }
+                    });
+        }
+
+        if (fragments != null) {
+            sourceDocs.forEach((className, doc) -> {
+                final Map<String, String> references = new HashMap<>();
+                collector.referencesByClass.getOrDefault(className, Set.of()).forEach(qualified -> {
+                    final String internalName = collector.internalClassNames.get(qualified);
+                    if (internalName != null) {
+                        references.put(qualified, internalName);
+                    }
+                });
+                try {
+                    fragments.write(className, new Fragment(doc, references, mixins.getOrDefault(className, Map.of())));
+                } catch (Exception exception) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write doc fragment of " + className + ": " + exception);
+                }
+            });
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks whether the class is only reprocessed from its class file, without being recompiled.
+     */
+    private boolean isReprocessed(TypeElement type, RoundEnvironment roundEnv) {
+        return fragments != null && trees.getPath(type) == null && roundEnv.getRootElements().contains(type);
+    }
+
+    @Nullable
+    private Fragment readFragment(TypeElement type, Map<String, Fragment> read) {
+        final String className = type.getQualifiedName().toString();
+        if (read.containsKey(className)) {
+            return read.get(className);
+        }
+        Fragment fragment = null;
+        try {
+            fragment = fragments.read(className);
+            if (fragment == null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Found no doc fragment of " + className + ", its docs will be missing until it is recompiled", type);
+            }
+        } catch (Exception exception) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not read doc fragment of " + className + ": " + exception);
+        }
+        read.put(className, fragment);
+        return fragment;
+    }
+
+    private void write() {
+        final JavadoctorInformation information = new JavadoctorInformation(new DocReferences(collector.internalClassNames), collector.javadocs);
+        if (Boolean.parseBoolean(processingEnv.getOptions().getOrDefault("shardedOutput", "false"))) {
+            writeShards(information);
+        } else {
+            writeSingle(information);
+        }
+
+        if (fragments != null) {
+            try {
+                fragments.deleteStale();
+            } catch (Exception exception) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not delete stale doc fragments: " + exception);
+            }
         }
+    }
 
-        try (final Writer writer = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", "javadoctor.json")
-                .openWriter()) {
-            GsonJDocIO.GSON.toJson(GsonJDocIO.write(GsonJDocIO.GSON, new JavadoctorInformation(new DocReferences(collector.internalClassNames), collector.javadocs)), writer);
+    private void writeSingle(JavadoctorInformation information) {
+        try (final JsonWriter writer = new JsonWriter(processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", "javadoctor.json")
+                .openWriter())) {
+            GsonJDocIO.write(information, writer);
         } catch (Exception exception) {
             processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write javadocs json: " + exception);
         }
 
-        return false;
+        // The binary doctor is much cheaper for the injector to load, the json is kept as the interchange format
+        try (final OutputStream out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", "javadoctor.bin")
+                .openOutputStream()) {
+            BinaryJDocIO.write(information, out);
+        } catch (Exception exception) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write binary javadocs: " + exception);
+        }
     }
 
+    /**
+     * Writes a binary doctor per package, listed by a manifest, so that consumers can load only the packages they need.
+     * The references are only needed by the collector, so they're written to a doctor of their own rather than to every shard.
+     */
+    private void writeShards(JavadoctorInformation information) {
+        final Map<String, Map<String, ClassJavadoc>> packages = new TreeMap<>();
+        information.getClassDocs().forEach((className, doc) -> packages.computeIfAbsent(ShardManifest.getPackage(className), k -> new HashMap<>()).put(className, doc));
+        try {
+            final Map<String, String> shards = new LinkedHashMap<>();
+            for (final Map.Entry<String, Map<String, ClassJavadoc>> pkg : packages.entrySet()) {
+                final String shard = ShardManifest.getShardName(pkg.getKey(), "bin");
+                writeBinary(shard, new JavadoctorInformation(new DocReferences(new HashMap<>()), pkg.getValue()));
+                shards.put(pkg.getKey(), shard);
+            }
+            writeBinary("references.bin", new JavadoctorInformation(information.getReferences(), new HashMap<>()));
+            try (final JsonWriter writer = new JsonWriter(processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SHARDS_DIRECTORY + ShardManifest.FILE_NAME)
+                    .openWriter())) {
+                GsonJDocIO.writeManifest(new ShardManifest(shards, "references.bin"), writer);
+            }
+        } catch (Exception exception) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write sharded javadocs: " + exception);
+        }
+    }
+
+    private void writeBinary(String shard, JavadoctorInformation information) throws IOException {
+        try (final OutputStream out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SHARDS_DIRECTORY + shard)
+                .openOutputStream()) {
+            BinaryJDocIO.write(information, out);
+        }
+    }
 }
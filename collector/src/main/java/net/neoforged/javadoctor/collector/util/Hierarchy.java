@@ -6,8 +6,15 @@ import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.util.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 
 public record Hierarchy(Types types, Names names) {
@@ -44,20 +51,52 @@ public record Hierarchy(Types types, Names names) {
                 .toList();
     }
 
+    /**
+     * Streams the classes enclosing the given class, from the outermost one to the innermost one.
+     */
     public static Stream<TypeElement> walkEnclosingClasses(TypeElement clazz) {
-        if (clazz.getEnclosingElement() == null)
-            return Stream.empty();
-        return Stream.of(clazz.getEnclosingElement())
-                .filter(e -> e.getKind().isClass() || e.getKind().isInterface())
-                .map(TypeElement.class::cast)
-                .flatMap(e -> Stream.concat(walkEnclosingClasses(e), Stream.of(e)));
+        final List<TypeElement> enclosing = new ArrayList<>();
+        Element current = clazz.getEnclosingElement();
+        while (current != null && isClass(current)) {
+            enclosing.add((TypeElement) current);
+            current = current.getEnclosingElement();
+        }
+        Collections.reverse(enclosing);
+        return enclosing.stream();
     }
 
+    /**
+     * Streams the classes nested in the given class at any depth, each one after its own nested classes.
+     */
     public static Stream<TypeElement> walkChildren(TypeElement clazz) {
-        return clazz.getEnclosedElements().stream()
-                .filter(e -> e.getKind().isClass() || e.getKind().isInterface())
-                .map(TypeElement.class::cast)
-                .flatMap(e -> Stream.concat(walkChildren(e), Stream.of(e)).distinct());
+        final List<TypeElement> children = new ArrayList<>();
+        final Set<TypeElement> visited = new HashSet<>();
+        // Each class on the stack is paired with the iterator over its remaining enclosed elements
+        final Deque<TypeElement> parents = new ArrayDeque<>();
+        final Deque<Iterator<? extends Element>> enclosed = new ArrayDeque<>();
+        parents.push(clazz);
+        enclosed.push(clazz.getEnclosedElements().iterator());
+        while (!parents.isEmpty()) {
+            final Iterator<? extends Element> iterator = enclosed.peek();
+            if (iterator.hasNext()) {
+                final Element element = iterator.next();
+                if (isClass(element) && visited.add((TypeElement) element)) {
+                    parents.push((TypeElement) element);
+                    enclosed.push(element.getEnclosedElements().iterator());
+                }
+            } else {
+                enclosed.pop();
+                final TypeElement parent = parents.pop();
+                if (parent != clazz) {
+                    children.add(parent);
+                }
+            }
+        }
+        return children.stream();
+    }
+
+    private static boolean isClass(Element element) {
+        return element.getKind().isClass() || element.getKind().isInterface();
     }
 
     public static TypeElement getTopLevel(TypeElement clazz) {
@@ -7,17 +7,62 @@ import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+public final class Names {
+    private final Types types;
+    private final Elements elements;
+    // The descriptors of the methods and types, and the internal names of the classes computed so far
+    private final Map<ExecutableElement, String> descs = new IdentityHashMap<>();
+    private final Map<TypeMirror, String> paramDescriptors = new IdentityHashMap<>();
+    private final Map<Element, String> internalNames = new IdentityHashMap<>();
+
+    public Names(Types types, Elements elements) {
+        this.types = types;
+        this.elements = elements;
+    }
+
+    public Types types() {
+        return types;
+    }
+
+    public Elements elements() {
+        return elements;
+    }
+
+    /**
+     * Clears the computed names, as elements shouldn't be used across rounds.
+     */
+    public void clearCaches() {
+        descs.clear();
+        paramDescriptors.clear();
+        internalNames.clear();
+    }
 
-public record Names(Types types, Elements elements) {
     public String getDesc(ExecutableElement method) {
-        final var signatureBuilder = new StringBuilder("(");
-        for (final var parameter : method.getParameters()) {
-            signatureBuilder.append(getParamDescriptor(parameter.asType()));
+        String desc = descs.get(method);
+        if (desc == null) {
+            final var signatureBuilder = new StringBuilder("(");
+            for (final var parameter : method.getParameters()) {
+                signatureBuilder.append(getParamDescriptor(parameter.asType()));
+            }
+            desc = signatureBuilder + ")" + getParamDescriptor(method.getReturnType());
+            descs.put(method, desc);
         }
-        return signatureBuilder + ")" + getParamDescriptor(method.getReturnType());
+        return desc;
     }
 
     public String getParamDescriptor(TypeMirror type) {
+        String descriptor = paramDescriptors.get(type);
+        if (descriptor == null) {
+            descriptor = computeParamDescriptor(type);
+            paramDescriptors.put(type, descriptor);
+        }
+        return descriptor;
+    }
+
+    private String computeParamDescriptor(TypeMirror type) {
         // Erase the type as we don't need it
         type = types.erasure(type);
         return switch (type.getKind()) {
@@ -41,7 +86,12 @@ public record Names(Types types, Elements elements) {
     }
 
     public String getInternalName(Element type) {
-        return getTypeName(type).replace('.', '/');
+        String internalName = internalNames.get(type);
+        if (internalName == null) {
+            internalName = getTypeName(type).replace('.', '/');
+            internalNames.put(type, internalName);
+        }
+        return internalName;
     }
 
     public String getTypeName(Element el) {
@@ -0,0 +1,134 @@
+package net.neoforged.javadoctor.collector;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.Trees;
+import net.neoforged.javadoctor.collector.util.Hierarchy;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares the single-pass expansion of doc comments with the {@link RegexDocExpander regex passes} it replaced,
+ * on the doc comments of the sources of the test project.
+ * Run it with {@code gradlew :collector:docExpansionBenchmark}.
+ */
+public class DocExpansionBenchmark {
+    private static final int ITERATIONS = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        final List<Path> sources;
+        try (final Stream<Path> files = Files.walk(Path.of(args[0]))) {
+            sources = files.filter(path -> path.toString().endsWith(".java")).sorted().toList();
+        }
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        // The sources reference Mixin, which isn't on the classpath, but the comments and the imports are all that's needed
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final List<Comment> comments = new ArrayList<>();
+        try (final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            final JavacTask task = (JavacTask) compiler.getTask(null, fileManager, diagnostics, List.of("-proc:none"), null, fileManager.getJavaFileObjectsFromPaths(sources));
+            final Iterable<? extends CompilationUnitTree> units = task.parse();
+            task.analyze();
+            final Elements elements = task.getElements();
+            final Trees trees = Trees.instance(task);
+            final Supplier<Map<String, String>> javaLangTypes = JavadocCollector.memoized(() -> {
+                final PackageElement javaLang = elements.getPackageElement("java.lang");
+                return ElementFilter.typesIn(javaLang.getEnclosedElements()).stream()
+                        .filter(type -> type.getModifiers().contains(Modifier.PUBLIC))
+                        .collect(Collectors.toMap(type -> type.getSimpleName().toString(), type -> type.getQualifiedName().toString()));
+            });
+
+            for (final CompilationUnitTree unit : units) {
+                for (final Tree declaration : unit.getTypeDecls()) {
+                    if (!(trees.getElement(TreePath.getPath(unit, declaration)) instanceof TypeElement topLevel)) continue;
+                    final JavadocCollector.Imports imports = JavadocCollector.Imports.fromTree(trees.getPath(topLevel), topLevel, javaLangTypes);
+                    // Only the expansion is measured, not the lookups of the imports
+                    imports.resolve();
+                    Stream.concat(Stream.of(topLevel), Hierarchy.walkChildren(topLevel)).forEach(type -> {
+                        addComment(comments, elements, type, imports);
+                        type.getEnclosedElements().forEach(member -> addComment(comments, elements, member, imports));
+                    });
+                }
+            }
+        }
+        System.out.printf("Expanding %d doc comments from %d files%n", comments.size(), sources.size());
+
+        final DocFQNExpander expander = new DocFQNExpander(null, null, new HashMap<>());
+        for (final Comment comment : comments) {
+            final List<String> expectedReferences = new ArrayList<>();
+            final List<String> expected = RegexDocExpander.expand(comment.doc, comment.imports, expectedReferences::add);
+            final List<String> actualReferences = new ArrayList<>();
+            final List<String> actual = new ArrayList<>();
+            expander.expand(comment.doc, comment.imports, actualReferences::add, actual::add);
+            check("lines", actual, expected);
+            check("references", actualReferences, expectedReferences);
+        }
+
+        run("expand", () -> {
+            int lines = 0;
+            for (final Comment comment : comments) {
+                final int[] count = new int[1];
+                expander.expand(comment.doc, comment.imports, reference -> {}, line -> count[0]++);
+                lines += count[0];
+            }
+            return lines;
+        }, () -> {
+            int lines = 0;
+            for (final Comment comment : comments) {
+                lines += RegexDocExpander.expand(comment.doc, comment.imports, reference -> {}).size();
+            }
+            return lines;
+        });
+    }
+
+    private static void addComment(List<Comment> comments, Elements elements, Element element, JavadocCollector.Imports imports) {
+        final String doc = elements.getDocComment(element);
+        if (doc != null && !doc.isBlank()) {
+            comments.add(new Comment(doc, imports));
+        }
+    }
+
+    private static void check(String name, Object actual, Object expected) {
+        if (!actual.equals(expected)) {
+            throw new AssertionError(name + " were " + actual + " instead of " + expected);
+        }
+    }
+
+    private static void run(String name, Supplier<?> current, Supplier<?> old) {
+        // Warm up both before measuring
+        measure(current);
+        measure(old);
+        System.out.printf("%s: %.1f us, regex passes: %.1f us%n", name, measure(current) / 1000.0, measure(old) / 1000.0);
+    }
+
+    private static double measure(Supplier<?> action) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            action.get();
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+
+    private record Comment(String doc, JavadocCollector.Imports imports) {}
+}
@@ -0,0 +1,101 @@
+package net.neoforged.javadoctor.collector;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Fuzzes the single-pass expansion of {@link DocFQNExpander} against the {@link RegexDocExpander regex passes} it replaced,
+ * with random comments built from reference, tag, descriptor and whitespace tokens.
+ */
+public class DocFQNExpanderTest {
+    private static final int ITERATIONS = 50_000;
+    private static final String[] TOKENS = {
+            "@link", "@linkplain", "@see", "@value", "@param", "@return", "@", "{", "}", "{@link ", "@see ",
+            " ", " ", " ", "  ", "\t", "\n", "\n ", "\n * ", "\r",
+            "#", "(", ")", ",", ", ", "[]", "...", ".", "%", "*", "<T>", "_", "1",
+            "Foo", "List", "Map", "Inner", "String", "Unknown", "pkg.Foo", "java.util.List", "Foo.Inner",
+            "foo", "bar", "baz", "value", "text", "int", "x"
+    };
+    private static final Map<String, String> TYPES = Map.of(
+            "Foo", "pkg.Foo",
+            "List", "java.util.List",
+            "Map", "java.util.Map",
+            "Inner", "pkg.Foo.Inner",
+            "String", "java.lang.String"
+    );
+    private static final Map<String, String> MEMBERS = Map.of(
+            "foo", "pkg.Foo",
+            "baz", "pkg.Foo.Inner",
+            "#bar", "pkg.Foo",
+            "#value", "pkg.Foo.Inner"
+    );
+
+    @Test
+    void testMatchesRegexExpansion() {
+        final Random random = new Random(42);
+        final DocFQNExpander expander = new DocFQNExpander(null, null, new HashMap<>());
+        final JavadocCollector.Imports imports = new FuzzImports();
+        int compared = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            final String doc = randomDoc(random);
+
+            if (doc.indexOf('$') != -1) {
+                // replaceAll reads a $ of the expansion as a group reference, making the regex expansion throw or garble the reference
+                Assertions.assertDoesNotThrow(() -> expander.expand(doc, imports, r -> {}, l -> {}), () -> "Expanding " + escape(doc) + " failed");
+                continue;
+            }
+
+            final List<String> expectedReferences = new ArrayList<>();
+            final List<String> expected = RegexDocExpander.expand(doc, imports, expectedReferences::add);
+            final List<String> actualReferences = new ArrayList<>();
+            final List<String> actual = new ArrayList<>();
+            expander.expand(doc, imports, actualReferences::add, actual::add);
+            Assertions.assertEquals(expected, actual, () -> "Expansion of " + escape(doc) + " differs");
+            Assertions.assertEquals(expectedReferences, actualReferences, () -> "References of " + escape(doc) + " differ");
+            compared++;
+        }
+        Assertions.assertTrue(compared > ITERATIONS / 2, "Only " + compared + " comments could be compared");
+    }
+
+    private static String randomDoc(Random random) {
+        final StringBuilder doc = new StringBuilder();
+        final int tokens = 1 + random.nextInt(40);
+        for (int i = 0; i < tokens; i++) {
+            // A $ is only added now and then, as the comments containing one can't be compared
+            doc.append(random.nextInt(200) == 0 ? "$" : TOKENS[random.nextInt(TOKENS.length)]);
+        }
+        return doc.toString();
+    }
+
+    private static String escape(String doc) {
+        return '"' + doc.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t") + '"';
+    }
+
+    /**
+     * Resolves names like the imports of a compilation unit, from the first segment of the name.
+     */
+    private static final class FuzzImports implements JavadocCollector.Imports {
+        @Override
+        public String getQualified(String inputName) {
+            final int end = inputName.indexOf('.');
+            final String qualified = TYPES.get(end == -1 ? inputName : inputName.substring(0, end));
+            return qualified == null ? inputName : qualified;
+        }
+
+        @Nullable
+        @Override
+        public String getMemberOwner(String member) {
+            return MEMBERS.get(member);
+        }
+
+        @Override
+        public void resolve() {}
+    }
+}
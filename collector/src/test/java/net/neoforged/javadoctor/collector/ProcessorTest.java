@@ -0,0 +1,198 @@
+package net.neoforged.javadoctor.collector;
+
+import com.google.gson.stream.JsonReader;
+import net.neoforged.javadoctor.io.gson.GsonJDocIO;
+import net.neoforged.javadoctor.spec.ClassJavadoc;
+import net.neoforged.javadoctor.spec.JavadoctorInformation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs the processor the way Gradle runs incremental processors, which get a wrapper of the environment of javac.
+ */
+public class ProcessorTest {
+    private static final String SOURCE = """
+            package pkg;
+
+            import java.util.List;
+
+            /**
+             * A documented class, see {@link List}.
+             */
+            public class Documented {
+                /**
+                 * Does something.
+                 * @param value the value to use
+                 */
+                public void run(int value) {}
+            }
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testTextEngineUnderGradle() throws Exception {
+        testUnderGradle("text");
+    }
+
+    @Test
+    void testDocTreeEngineUnderGradle() throws Exception {
+        testUnderGradle("doctree");
+    }
+
+    private void testUnderGradle(String engine) throws Exception {
+        final Path fragments = dir.resolve("fragments");
+        final GradleProcessor processor = new GradleProcessor(new Processor());
+        // Mixin isn't on the classpath of the compilation
+        compile(processor, "-AcollectionPackages=pkg", "-AmixinCollect=false", "-AfragmentsDirectory=" + fragments, "-AcollectionEngine=" + engine);
+
+        Assertions.assertTrue(processor.getSupportedOptions().contains("org.gradle.annotation.processing.aggregating"), "The processor isn't aggregating when storing fragments");
+        Assertions.assertTrue(Files.exists(fragments.resolve("pkg.Documented.json")), "The fragment of the class wasn't written");
+
+        final JavadoctorInformation information;
+        try (final JsonReader reader = new JsonReader(Files.newBufferedReader(dir.resolve("classes/javadoctor.json"), StandardCharsets.UTF_8))) {
+            information = GsonJDocIO.read(reader);
+        }
+        final ClassJavadoc doc = information.getClassDocs().get("pkg.Documented");
+        Assertions.assertNotNull(doc, "The docs of the class weren't collected");
+        Assertions.assertEquals("A documented class, see {@link java.util.List}.", doc.clazz().doc());
+        Assertions.assertEquals("Does something.", doc.methods().get("run(I)V").doc());
+        Assertions.assertArrayEquals(new String[] {"the value to use"}, doc.methods().get("run(I)V").parameters());
+    }
+
+    private void compile(javax.annotation.processing.Processor processor, String... options) throws Exception {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8)) {
+            final Path classes = Files.createDirectories(dir.resolve("classes"));
+            fileManager.setLocationFromPaths(StandardLocation.CLASS_OUTPUT, List.of(classes));
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, List.of(options), null,
+                    List.of(new SimpleJavaFileObject(URI.create("string:///pkg/Documented.java"), JavaFileObject.Kind.SOURCE) {
+                        @Override
+                        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                            return SOURCE;
+                        }
+                    }));
+            task.setProcessors(List.of(processor));
+            final boolean success = task.call();
+            final List<String> errors = new ArrayList<>();
+            diagnostics.getDiagnostics().stream()
+                    .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                    .forEach(diagnostic -> errors.add(diagnostic.getMessage(Locale.ROOT)));
+            Assertions.assertTrue(success && errors.isEmpty(), () -> "Compilation failed: " + errors);
+        }
+    }
+
+    /**
+     * Wraps a processor like Gradle wraps incremental processors, giving it an environment which only delegates to the one of javac.
+     */
+    private record GradleProcessor(javax.annotation.processing.Processor delegate) implements javax.annotation.processing.Processor {
+        @Override
+        public Set<String> getSupportedOptions() {
+            return delegate.getSupportedOptions();
+        }
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return delegate.getSupportedAnnotationTypes();
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return delegate.getSupportedSourceVersion();
+        }
+
+        @Override
+        public void init(ProcessingEnvironment processingEnv) {
+            delegate.init(new IncrementalProcessingEnvironment(processingEnv));
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            return delegate.process(annotations, roundEnv);
+        }
+
+        @Override
+        public Iterable<? extends Completion> getCompletions(Element element, AnnotationMirror annotation, ExecutableElement member, String userText) {
+            return delegate.getCompletions(element, annotation, member, userText);
+        }
+    }
+
+    /**
+     * Mirrors the environment Gradle gives to incremental processors, which keeps the one of javac in a field named {@code delegate}.
+     */
+    private static final class IncrementalProcessingEnvironment implements ProcessingEnvironment {
+        private final ProcessingEnvironment delegate;
+
+        private IncrementalProcessingEnvironment(ProcessingEnvironment delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Map<String, String> getOptions() {
+            return delegate.getOptions();
+        }
+
+        @Override
+        public Messager getMessager() {
+            return delegate.getMessager();
+        }
+
+        @Override
+        public Filer getFiler() {
+            return delegate.getFiler();
+        }
+
+        @Override
+        public Elements getElementUtils() {
+            return delegate.getElementUtils();
+        }
+
+        @Override
+        public Types getTypeUtils() {
+            return delegate.getTypeUtils();
+        }
+
+        @Override
+        public SourceVersion getSourceVersion() {
+            return delegate.getSourceVersion();
+        }
+
+        @Override
+        public Locale getLocale() {
+            return delegate.getLocale();
+        }
+    }
+}
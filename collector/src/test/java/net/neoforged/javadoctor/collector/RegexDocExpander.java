@@ -0,0 +1,84 @@
+package net.neoforged.javadoctor.collector;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * The regex-based expansion of doc comments which {@link DocFQNExpander#expand} replaced: the reference expansion pattern,
+ * then the requalification of the targets of links, after which the comment was split into lines.
+ */
+final class RegexDocExpander {
+    private static final Pattern PATTERN = Pattern.compile("@(?<tag>link|linkplain|see|value)(?<space>\\s+)(?<owner>[\\w$.]*)(?:#(?<member>[\\w%]+)?(?<descFull>\\((?<desc>[\\w$., \\[\\]]+)?\\))?)?");
+    private static final Pattern LINKS = Pattern.compile("(@link|@linkplain|@see|@value) ([a-zA-Z0-9\\._]+)");
+
+    private RegexDocExpander() {}
+
+    /**
+     * Expands the doc like the collector used to, keeping its trailing empty lines like the single-pass expansion does.
+     */
+    static List<String> expand(String doc, JavadocCollector.Imports imports, Consumer<String> references) {
+        String expanded = PATTERN.matcher(doc).replaceAll(result -> {
+            final StringBuffer text = new StringBuffer()
+                    .append('@').append(result.group(1)).append(result.group(2));
+            final String owner = getQualified(imports, result.group(3), references);
+            final String member = result.group(4);
+            final String descFull = result.group(5);
+            final boolean hasDesc = descFull != null && !descFull.isBlank();
+            String desc = result.group(6);
+            if (hasDesc && desc == null) desc = "";
+            if (owner == null || owner.isBlank()) {
+                if (member == null) {
+                    return result.group(0);
+                }
+                final String actualOwner = imports.getMemberOwner(hasDesc ? member : "#" + member);
+                if (actualOwner != null) {
+                    text.append(actualOwner);
+                    references.accept(actualOwner);
+                }
+            } else {
+                text.append(owner);
+            }
+            if (member == null) {
+                return text.toString();
+            }
+            text.append('#').append(member);
+            if (!hasDesc) {
+                return text.toString();
+            }
+            return text.append('(').append(String.join(", ", getParameterTypes(desc, imports, references))).append(')').toString();
+        });
+        expanded = LINKS.matcher(expanded).replaceAll(matchResult -> matchResult.group(1) + " " + imports.getQualified(matchResult.group(2)));
+        return Arrays.asList(expanded.split("\n", -1));
+    }
+
+    private static String[] getParameterTypes(String desc, JavadocCollector.Imports imports, Consumer<String> references) {
+        final String[] sDesc = desc.split(",");
+        final String[] nDesc = new String[sDesc.length];
+        for (int i = 0; i < sDesc.length; i++) {
+            String d = sDesc[i].trim();
+            if (d.endsWith("...")) {
+                nDesc[i] = getQualified(imports, d.substring(0, d.length() - 3), references) + "...";
+            } else {
+                int arrayAmount = 0;
+                while (d.endsWith("[]")) {
+                    arrayAmount++;
+                    d = d.substring(0, d.length() - 2);
+                }
+                nDesc[i] = getQualified(imports, d, references) + "[]".repeat(arrayAmount);
+            }
+        }
+        return nDesc;
+    }
+
+    private static String getQualified(JavadocCollector.Imports imports, String reference, Consumer<String> references) {
+        if (reference == null) return null;
+
+        final String qualified = imports.getQualified(reference);
+        if (!qualified.isBlank()) {
+            references.accept(qualified);
+        }
+        return qualified;
+    }
+}
@@ -0,0 +1,101 @@
+package net.neoforged.javadoctor.collector.util;
+
+import com.sun.source.util.JavacTask;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.JavaCompiler;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.net.URI;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Compares the static traversals of {@link Hierarchy} with the recursive stream-based ones they replaced,
+ * on a deeply nested class.
+ * Run it with {@code gradlew :collector:hierarchyBenchmark}.
+ */
+public class HierarchyBenchmark {
+    private static final int NESTING = 200;
+    private static final int ITERATIONS = 200;
+
+    public static void main(String[] args) throws Exception {
+        final StringBuilder nested = new StringBuilder("package bench; public class Nested {");
+        for (int i = 0; i < NESTING; i++) {
+            nested.append(" public static class N").append(i).append(" { void m").append(i).append("() {}");
+        }
+        nested.append(" }".repeat(NESTING)).append(" }");
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final JavacTask task = (JavacTask) compiler.getTask(null, null, null, List.of("-proc:none"), null, List.of(
+                source("bench/Nested.java", nested.toString())));
+        task.analyze();
+        final Elements elements = task.getElements();
+
+        final TypeElement top = elements.getTypeElement("bench.Nested");
+        TypeElement innermost = top;
+        for (int i = 0; i < NESTING; i++) {
+            innermost = (TypeElement) innermost.getEnclosedElements().stream().filter(e -> e instanceof TypeElement).findFirst().orElseThrow();
+        }
+        final TypeElement finalInnermost = innermost;
+
+        check("walkChildren", Hierarchy.walkChildren(top).toList(), Old.walkChildren(top).toList());
+        check("walkEnclosingClasses", Hierarchy.walkEnclosingClasses(finalInnermost).toList(), Old.walkEnclosingClasses(finalInnermost).toList());
+
+        run("walkChildren", () -> Hierarchy.walkChildren(top).count(), () -> Old.walkChildren(top).count());
+        run("walkEnclosingClasses", () -> Hierarchy.walkEnclosingClasses(finalInnermost).count(), () -> Old.walkEnclosingClasses(finalInnermost).count());
+    }
+
+    private static void check(String name, Object actual, Object expected) {
+        if (!actual.equals(expected)) {
+            throw new AssertionError(name + " returned " + actual + " instead of " + expected);
+        }
+    }
+
+    private static void run(String name, Supplier<?> current, Supplier<?> old) {
+        // Warm up both before measuring
+        measure(current);
+        measure(old);
+        System.out.printf("%s: %.1f us, recursive streams: %.1f us%n", name, measure(current) / 1000.0, measure(old) / 1000.0);
+    }
+
+    private static double measure(Supplier<?> action) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            action.get();
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+
+    private static SimpleJavaFileObject source(String path, String content) {
+        return new SimpleJavaFileObject(URI.create("string:///" + path), SimpleJavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+
+    /**
+     * The previous implementations of the traversals.
+     */
+    private static class Old {
+        static Stream<TypeElement> walkEnclosingClasses(TypeElement clazz) {
+            if (clazz.getEnclosingElement() == null)
+                return Stream.empty();
+            return Stream.of(clazz.getEnclosingElement())
+                    .filter(e -> e.getKind().isClass() || e.getKind().isInterface())
+                    .map(TypeElement.class::cast)
+                    .flatMap(e -> Stream.concat(walkEnclosingClasses(e), Stream.of(e)));
+        }
+
+        static Stream<TypeElement> walkChildren(TypeElement clazz) {
+            return clazz.getEnclosedElements().stream()
+                    .filter(e -> e.getKind().isClass() || e.getKind().isInterface())
+                    .map(TypeElement.class::cast)
+                    .flatMap(e -> Stream.concat(walkChildren(e), Stream.of(e)).distinct());
+        }
+    }
+}
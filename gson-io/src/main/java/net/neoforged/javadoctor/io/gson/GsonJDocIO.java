@@ -6,13 +6,21 @@ import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import net.neoforged.javadoctor.spec.ClassJavadoc;
 import net.neoforged.javadoctor.spec.DocReferences;
 import net.neoforged.javadoctor.spec.JavadocEntry;
 import net.neoforged.javadoctor.spec.JavadoctorInformation;
+import net.neoforged.javadoctor.spec.ShardManifest;
+import net.neoforged.javadoctor.spec.StringPool;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -98,6 +106,312 @@ public class GsonJDocIO {
         return gson.fromJson(object, JavadoctorInformation.class);
     }
 
+    /**
+     * Reads the docs in a single pass over the reader, without building a json tree first.
+     * Both spec 1 and spec 2 are supported, no matter where the spec is declared in the object.
+     */
+    public static JavadoctorInformation read(JsonReader reader) throws IOException {
+        return read(reader, new StringPool());
+    }
+
+    /**
+     * Reads the docs like {@link #read(JsonReader)}, deduplicating all read strings through the given pool.
+     * The pool can be shared across several doctors to deduplicate the strings between them too.
+     */
+    public static JavadoctorInformation read(JsonReader reader, StringPool pool) throws IOException {
+        reader.setLenient(true);
+        final DocReader r = new DocReader(reader, pool);
+        Integer spec = null;
+        DocReferences references = null;
+        Map<String, ClassJavadoc> classDocs = null;
+        // Until the spec is known, the classes of spec 1 (which are in the root object) can't be told apart from the members of spec 2
+        final Map<String, ClassJavadoc> rootClassDocs = new LinkedHashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (name.equals("javadoctorSpec")) {
+                spec = reader.nextInt();
+                if (spec != 1 && spec != 2) {
+                    throw new UnsupportedOperationException("Cannot read javadocs of spec: " + spec);
+                }
+            } else if (spec != null && spec == 1) {
+                rootClassDocs.put(pool.intern(name), r.classJavadoc());
+            } else if (name.equals("references")) {
+                references = r.references();
+            } else if (name.equals("classDocs")) {
+                classDocs = r.map(r::classJavadoc);
+            } else if (spec == null) {
+                rootClassDocs.put(pool.intern(name), r.classJavadoc());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (spec != null && spec == 1) {
+            return new JavadoctorInformation(new DocReferences(new HashMap<>()), rootClassDocs);
+        }
+        return new JavadoctorInformation(references, classDocs);
+    }
+
+    private static final class DocReader {
+        private final JsonReader reader;
+        private final StringPool pool;
+
+        private DocReader(JsonReader reader, StringPool pool) {
+            this.reader = reader;
+            this.pool = pool;
+        }
+
+        private DocReferences references() throws IOException {
+            if (skipNull()) return null;
+            Map<String, String> classes = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("classes")) {
+                    classes = map(this::string);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return new DocReferences(classes);
+        }
+
+        private ClassJavadoc classJavadoc() throws IOException {
+            if (skipNull()) return null;
+            JavadocEntry clazz = null;
+            Map<String, JavadocEntry> methods = null;
+            Map<String, JavadocEntry> fields = null;
+            Map<String, ClassJavadoc> innerClasses = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "clazz":
+                        clazz = entry();
+                        break;
+                    case "methods":
+                        methods = map(this::entry);
+                        break;
+                    case "fields":
+                        fields = map(this::entry);
+                        break;
+                    case "innerClasses":
+                        innerClasses = map(this::classJavadoc);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return new ClassJavadoc(clazz, methods, fields, innerClasses);
+        }
+
+        private JavadocEntry entry() throws IOException {
+            if (skipNull()) return null;
+            String doc = null;
+            Map<String, List<String>> tags = null;
+            String[] parameters = null;
+            String[] typeParameters = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "doc":
+                        doc = string();
+                        break;
+                    case "tags":
+                        tags = map(this::strings);
+                        break;
+                    case "parameters":
+                        parameters = stringArray();
+                        break;
+                    case "typeParameters":
+                        typeParameters = stringArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return new JavadocEntry(doc, tags, parameters, typeParameters);
+        }
+
+        private <T> Map<String, T> map(ValueReader<T> valueReader) throws IOException {
+            if (skipNull()) return null;
+            final Map<String, T> map = new LinkedHashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                map.put(pool.intern(reader.nextName()), valueReader.read());
+            }
+            reader.endObject();
+            return map;
+        }
+
+        private List<String> strings() throws IOException {
+            if (skipNull()) return null;
+            final List<String> list = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                list.add(string());
+            }
+            reader.endArray();
+            return list;
+        }
+
+        private String[] stringArray() throws IOException {
+            final List<String> list = strings();
+            return list == null ? null : list.toArray(new String[0]);
+        }
+
+        private String string() throws IOException {
+            return skipNull() ? null : pool.intern(reader.nextString());
+        }
+
+        private boolean skipNull() throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueReader<T> {
+        T read() throws IOException;
+    }
+
+    /**
+     * Writes the docs to the writer as they are visited, without building a json tree first.
+     * Map keys are written in sorted order, so that the output is reproducible.
+     */
+    public static void write(JavadoctorInformation docs, JsonWriter writer) throws IOException {
+        writer.setSerializeNulls(false);
+        writer.beginObject();
+        writer.name("javadoctorSpec").value(2);
+        if (docs.getReferences() != null) {
+            writer.name("references").beginObject();
+            writer.name("classes");
+            writeMap(writer, docs.getReferences().getClasses(), JsonWriter::value);
+            writer.endObject();
+        }
+        writer.name("classDocs");
+        writeMap(writer, docs.getClassDocs(), GsonJDocIO::writeClassJavadoc);
+        writer.endObject();
+        writer.flush();
+    }
+
+    private static void writeClassJavadoc(JsonWriter writer, ClassJavadoc javadoc) throws IOException {
+        writer.beginObject();
+        writer.name("clazz");
+        writeEntry(writer, javadoc.clazz());
+        writer.name("methods");
+        writeMap(writer, javadoc.methods(), GsonJDocIO::writeEntry);
+        writer.name("fields");
+        writeMap(writer, javadoc.fields(), GsonJDocIO::writeEntry);
+        writer.name("innerClasses");
+        writeMap(writer, javadoc.innerClasses(), GsonJDocIO::writeClassJavadoc);
+        writer.endObject();
+    }
+
+    private static void writeEntry(JsonWriter writer, JavadocEntry entry) throws IOException {
+        if (entry == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginObject();
+        writer.name("doc").value(entry.doc());
+        writer.name("tags");
+        writeMap(writer, entry.tags(), (w, values) -> {
+            w.beginArray();
+            for (final String value : values) {
+                w.value(value);
+            }
+            w.endArray();
+        });
+        writer.name("parameters");
+        writeStrings(writer, entry.parameters());
+        writer.name("typeParameters");
+        writeStrings(writer, entry.typeParameters());
+        writer.endObject();
+    }
+
+    private static void writeStrings(JsonWriter writer, String[] strings) throws IOException {
+        if (strings == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginArray();
+        for (final String string : strings) {
+            writer.value(string);
+        }
+        writer.endArray();
+    }
+
+    private static <T> void writeMap(JsonWriter writer, Map<String, T> map, ValueWriter<T> valueWriter) throws IOException {
+        if (map == null) {
+            writer.nullValue();
+            return;
+        }
+        final List<String> keys = new ArrayList<>(map.keySet());
+        keys.sort(null);
+        writer.beginObject();
+        for (final String key : keys) {
+            final T value = map.get(key);
+            writer.name(key);
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                valueWriter.write(writer, value);
+            }
+        }
+        writer.endObject();
+    }
+
+    @FunctionalInterface
+    private interface ValueWriter<T> {
+        void write(JsonWriter writer, T value) throws IOException;
+    }
+
+    public static void writeManifest(ShardManifest manifest, JsonWriter writer) throws IOException {
+        writer.setSerializeNulls(false);
+        writer.beginObject();
+        writer.name("javadoctorShards").value(1);
+        writer.name("references").value(manifest.getReferences());
+        writer.name("shards");
+        writeMap(writer, manifest.getShards(), JsonWriter::value);
+        writer.endObject();
+        writer.flush();
+    }
+
+    public static ShardManifest readManifest(JsonReader reader) throws IOException {
+        final DocReader r = new DocReader(reader, new StringPool());
+        Map<String, String> shards = null;
+        String references = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "javadoctorShards":
+                    final int version = reader.nextInt();
+                    if (version != 1) {
+                        throw new UnsupportedOperationException("Cannot read shard manifests of version: " + version);
+                    }
+                    break;
+                case "references":
+                    references = r.string();
+                    break;
+                case "shards":
+                    shards = r.map(r::string);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new ShardManifest(shards == null ? new HashMap<>() : shards, references);
+    }
+
     public static JsonObject write(Gson gson, JavadoctorInformation docs) {
         final JsonObject object = gson.toJsonTree(docs).getAsJsonObject();
         object.addProperty("javadoctorSpec", 2);
@@ -0,0 +1,48 @@
+package net.neoforged.javadoctor.injector;
+
+import net.neoforged.javadoctor.io.binary.BinaryDoctor;
+import net.neoforged.javadoctor.spec.ClassJavadoc;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A provider which decodes the docs of a class from a binary doctor file the first time they are requested.
+ * The most recently used docs are kept in a bounded cache, so that injecting a few classes against a large doctor
+ * doesn't need the whole file decoded in memory.
+ */
+public class BinaryDoctorProvider implements JavadocProvider {
+    private final BinaryDoctor doctor;
+    private final Map<String, ClassJavadoc> cache;
+
+    public BinaryDoctorProvider(BinaryDoctor doctor, int cacheSize) {
+        this.doctor = doctor;
+        this.cache = new LinkedHashMap<String, ClassJavadoc>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ClassJavadoc> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    @Nullable
+    @Override
+    public ClassJavadoc get(String className) {
+        synchronized (cache) {
+            final ClassJavadoc cached = cache.get(className);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        // Decode outside the lock, at worst two threads decode the same class
+        final ClassJavadoc javadoc = doctor.readClass(className);
+        if (javadoc != null) {
+            synchronized (cache) {
+                cache.put(className, javadoc);
+            }
+        }
+        return javadoc;
+    }
+}
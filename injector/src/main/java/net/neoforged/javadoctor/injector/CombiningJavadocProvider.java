@@ -3,17 +3,58 @@ package net.neoforged.javadoctor.injector;
 import net.neoforged.javadoctor.spec.ClassJavadoc;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CombiningJavadocProvider implements JavadocProvider {
+    // Classes are usually looked up together with the other classes of their file, so a few recently merged docs are enough
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+    // Marks the classes none of the sources have docs for, as the cache cannot hold nulls
+    private static final ClassJavadoc MISSING = new ClassJavadoc();
+
     private final List<JavadocProvider> sources;
+    // Classes are looked up several times per file, and from several threads, so only merge their docs once.
+    // The cache is bounded, so that it doesn't keep every doc of the sources, which may only keep a few of them in memory themselves
+    private final Map<String, ClassJavadoc> merged;
 
     public CombiningJavadocProvider(List<JavadocProvider> sources) {
+        this(sources, DEFAULT_CACHE_SIZE);
+    }
+
+    public CombiningJavadocProvider(List<JavadocProvider> sources, int cacheSize) {
         this.sources = new ArrayList<>(sources);
+        this.merged = new LinkedHashMap<String, ClassJavadoc>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ClassJavadoc> eldest) {
+                return size() > cacheSize;
+            }
+        };
     }
 
     @Override
     public ClassJavadoc get(String clazz) {
+        // A single source has nothing to merge
+        if (sources.size() == 1) {
+            return sources.get(0).get(clazz);
+        }
+
+        synchronized (merged) {
+            final ClassJavadoc cached = merged.get(clazz);
+            if (cached != null) {
+                return cached == MISSING ? null : cached;
+            }
+        }
+
+        // Merge outside the lock, at worst two threads merge the same class
+        final ClassJavadoc javadoc = resolve(clazz);
+        synchronized (merged) {
+            merged.put(clazz, javadoc == null ? MISSING : javadoc);
+        }
+        return javadoc;
+    }
+
+    private ClassJavadoc resolve(String clazz) {
         ClassJavadoc javadoc = null;
         for (final JavadocProvider provider : sources) {
             if (javadoc == null) {
@@ -33,7 +33,8 @@ public class DocFormatter {
             lines.add(line);
         }
 
-        final Map<String, List<String>> tags = entry.tags() instanceof HashMap ? entry.tags() : new HashMap<>(entry.tags() == null ? new HashMap<>() : entry.tags());
+        // Always copy the tags, as the entry may be shared between threads and the author and version tags are removed from the map below
+        final Map<String, List<String>> tags = entry.tags() == null ? new HashMap<>() : new HashMap<>(entry.tags());
 
         appendJust(lines, tags, "author", "version");
 
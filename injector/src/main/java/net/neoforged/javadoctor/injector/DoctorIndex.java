@@ -0,0 +1,42 @@
+package net.neoforged.javadoctor.injector;
+
+import net.neoforged.javadoctor.spec.ClassJavadoc;
+import net.neoforged.javadoctor.spec.JavadoctorInformation;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The docs of several doctor files, merged ahead of time into a single immutable index.
+ * The doctor files are expected to be read with a shared {@link net.neoforged.javadoctor.spec.StringPool}, so that strings repeated across classes and files,
+ * such as tag names, descriptors and parameter names, are already shared.
+ */
+public final class DoctorIndex implements JavadocProvider {
+    private final Map<String, ClassJavadoc> classDocs;
+
+    private DoctorIndex(Map<String, ClassJavadoc> classDocs) {
+        this.classDocs = classDocs;
+    }
+
+    /**
+     * Merges the docs of the given doctor files, as {@link ClassJavadoc#merge} does. When several files document the same element,
+     * the doc text of the first one is kept, their tag lists are concatenated in file order, parameter names missing from
+     * the first file are filled in from the later ones, and the docs of their inner classes are merged the same way.
+     */
+    public static DoctorIndex build(List<JavadoctorInformation> doctors) {
+        final Map<String, ClassJavadoc> merged = new HashMap<>();
+        for (final JavadoctorInformation doctor : doctors) {
+            doctor.getClassDocs().forEach((name, doc) -> merged.merge(name, doc, ClassJavadoc::merge));
+        }
+        return new DoctorIndex(Collections.unmodifiableMap(merged));
+    }
+
+    @Nullable
+    @Override
+    public ClassJavadoc get(String className) {
+        return classDocs.get(className);
+    }
+}
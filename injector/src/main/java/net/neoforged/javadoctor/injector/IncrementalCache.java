@@ -0,0 +1,377 @@
+package net.neoforged.javadoctor.injector;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import net.neoforged.javadoctor.injector.zip.ZipReader;
+import net.neoforged.javadoctor.spec.ClassJavadoc;
+import net.neoforged.javadoctor.spec.JavadocEntry;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tracks the inputs each source entry of an output jar was injected from, so that a later run can copy
+ * the entries whose source and docs did not change from the previous output instead of injecting them again.
+ */
+final class IncrementalCache implements Closeable {
+    private static final int VERSION = 1;
+    private static final Gson GSON = new Gson();
+
+    private final Path manifestPath;
+    private final String key;
+    private final Map<String, CachedEntry> previous;
+    @Nullable
+    private final ZipReader previousOutput;
+    private final Map<String, CachedEntry> current = new LinkedHashMap<>();
+
+    private IncrementalCache(Path manifestPath, String key, Map<String, CachedEntry> previous, @Nullable ZipReader previousOutput) {
+        this.manifestPath = manifestPath;
+        this.key = key;
+        this.previous = previous;
+        this.previousOutput = previousOutput;
+    }
+
+    public static IncrementalCache load(Path output, String key) throws IOException {
+        final Path manifestPath = output.resolveSibling(output.getFileName() + ".cache.json");
+        final Map<String, CachedEntry> previous = new HashMap<>();
+        if (Files.exists(manifestPath) && Files.exists(output)) {
+            try (final Reader reader = Files.newBufferedReader(manifestPath)) {
+                readEntries(GSON.fromJson(reader, JsonElement.class), key, previous);
+            } catch (JsonParseException | IllegalStateException | UnsupportedOperationException | NumberFormatException exception) {
+                // A corrupt manifest, or one written by something else, is treated as if there was none
+                previous.clear();
+            }
+        }
+        ZipReader previousOutput = null;
+        if (!previous.isEmpty()) {
+            try {
+                previousOutput = ZipReader.open(output);
+            } catch (IOException exception) {
+                // A truncated or corrupt previous output can't be copied from, so nothing is reused
+                previous.clear();
+            }
+        }
+        return new IncrementalCache(manifestPath, key, previous, previousOutput);
+    }
+
+    private static void readEntries(@Nullable JsonElement element, String key, Map<String, CachedEntry> entries) {
+        if (element == null || !element.isJsonObject()) return;
+        final JsonObject manifest = element.getAsJsonObject();
+        final JsonElement version = manifest.get("version");
+        final JsonElement manifestKey = manifest.get("key");
+        final JsonElement manifestEntries = manifest.get("entries");
+        if (!isPrimitive(version) || version.getAsInt() != VERSION || !isPrimitive(manifestKey) || !manifestKey.getAsString().equals(key)
+                || manifestEntries == null || !manifestEntries.isJsonObject()) {
+            return;
+        }
+        for (final Map.Entry<String, JsonElement> entry : manifestEntries.getAsJsonObject().entrySet()) {
+            final CachedEntry cached = CachedEntry.fromJson(entry.getValue());
+            if (cached == null) {
+                entries.clear();
+                return;
+            }
+            entries.put(entry.getKey(), cached);
+        }
+    }
+
+    private static boolean isPrimitive(@Nullable JsonElement element) {
+        return element != null && element.isJsonPrimitive();
+    }
+
+    @Nullable
+    public Reused reuse(String name, String sourceHash, Function<String, String> docHasher) throws IOException {
+        final CachedEntry cached = previous.get(name);
+        if (previousOutput == null || cached == null || !cached.sourceHash.equals(sourceHash)) {
+            return null;
+        }
+        for (final Map.Entry<String, String> doc : cached.docHashes.entrySet()) {
+            if (!doc.getValue().equals(docHasher.apply(doc.getKey()))) {
+                return null;
+            }
+        }
+        final ZipReader.Entry entry = previousOutput.getEntry(name);
+        if (entry == null) {
+            return null;
+        }
+        return new Reused(cached, previousOutput, entry);
+    }
+
+    public void record(String name, CachedEntry entry) {
+        current.put(name, entry);
+    }
+
+    public void save() throws IOException {
+        close();
+        final JsonObject entries = new JsonObject();
+        current.forEach((name, entry) -> entries.add(name, entry.toJson()));
+        final JsonObject manifest = new JsonObject();
+        manifest.addProperty("version", VERSION);
+        manifest.addProperty("key", key);
+        manifest.add("entries", entries);
+        try (final Writer writer = Files.newBufferedWriter(manifestPath)) {
+            GSON.toJson(manifest, writer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (previousOutput != null) {
+            previousOutput.close();
+        }
+    }
+
+    public static String hashSource(byte[] source, byte @Nullable [] extra) {
+        final Hasher hasher = new Hasher();
+        hasher.bytes(source);
+        hasher.bytes(extra);
+        return hasher.finish();
+    }
+
+    /**
+     * Hashes the path, size and last modification time of each classpath entry, and of each file in the directories on the classpath,
+     * so that changing what is on the classpath invalidates the cache without reading it all.
+     */
+    public static String hashClasspath(List<File> classpath) throws IOException {
+        final Hasher hasher = new Hasher();
+        hasher.digest.update(Hasher.intBytes(classpath.size()));
+        for (final File file : classpath) {
+            final Path path = file.toPath();
+            if (Files.isDirectory(path)) {
+                hasher.string(path.toAbsolutePath().toString());
+                final List<Path> files;
+                try (final Stream<Path> walk = Files.walk(path)) {
+                    files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                hasher.digest.update(Hasher.intBytes(files.size()));
+                for (final Path child : files) {
+                    hasher.file(path.relativize(child).toString(), child);
+                }
+            } else {
+                hasher.file(path.toAbsolutePath().toString(), path);
+            }
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * Hashes the jars or directories the given classes were loaded from, as they are, so that updating the injector
+     * or the class parser invalidates the cache. A class whose location is unknown makes the hash differ on every run.
+     */
+    public static String hashImplementation(Class<?>... classes) throws IOException {
+        final Hasher hasher = new Hasher();
+        for (final Class<?> clazz : classes) {
+            hasher.string(clazz.getName());
+            final CodeSource source = clazz.getProtectionDomain().getCodeSource();
+            final URL location = source == null ? null : source.getLocation();
+            if (location == null || !"file".equals(location.getProtocol())) {
+                hasher.string(UUID.randomUUID().toString());
+                continue;
+            }
+            try {
+                hasher.string(hashClasspath(Collections.singletonList(new File(location.toURI()))));
+            } catch (URISyntaxException exception) {
+                throw new IOException("Invalid location of " + clazz.getName() + ": " + location, exception);
+            }
+        }
+        return hasher.finish();
+    }
+
+    public static String hashDocs(@Nullable ClassJavadoc javadoc) {
+        final Hasher hasher = new Hasher();
+        hasher.classDoc(javadoc);
+        return hasher.finish();
+    }
+
+    public static final class Reused {
+        public final CachedEntry entry;
+        public final ZipReader source;
+        public final ZipReader.Entry data;
+
+        private Reused(CachedEntry entry, ZipReader source, ZipReader.Entry data) {
+            this.entry = entry;
+            this.source = source;
+            this.data = data;
+        }
+    }
+
+    public static final class CachedEntry {
+        public final String sourceHash;
+        public final Map<String, String> docHashes;
+        public final int @Nullable [] mapping;
+
+        public CachedEntry(String sourceHash, Map<String, String> docHashes, int @Nullable [] mapping) {
+            this.sourceHash = sourceHash;
+            this.docHashes = docHashes;
+            this.mapping = mapping;
+        }
+
+        private JsonObject toJson() {
+            final JsonObject object = new JsonObject();
+            object.addProperty("source", sourceHash);
+            final JsonObject docs = new JsonObject();
+            docHashes.forEach(docs::addProperty);
+            object.add("docs", docs);
+            if (mapping != null) {
+                final JsonArray array = new JsonArray(mapping.length);
+                for (final int line : mapping) {
+                    array.add(line);
+                }
+                object.add("mapping", array);
+            }
+            return object;
+        }
+
+        @Nullable
+        private static CachedEntry fromJson(JsonElement element) {
+            if (!element.isJsonObject()) return null;
+            final JsonObject object = element.getAsJsonObject();
+            final JsonElement source = object.get("source");
+            final JsonElement docsElement = object.get("docs");
+            final JsonElement mappingElement = object.get("mapping");
+            if (!isPrimitive(source) || docsElement == null || !docsElement.isJsonObject() || (mappingElement != null && !mappingElement.isJsonArray())) {
+                return null;
+            }
+
+            final Map<String, String> docs = new LinkedHashMap<>();
+            for (final Map.Entry<String, JsonElement> doc : docsElement.getAsJsonObject().entrySet()) {
+                if (!isPrimitive(doc.getValue())) return null;
+                docs.put(doc.getKey(), doc.getValue().getAsString());
+            }
+            int[] mapping = null;
+            if (mappingElement != null) {
+                final JsonArray array = mappingElement.getAsJsonArray();
+                mapping = new int[array.size()];
+                for (int i = 0; i < mapping.length; i++) {
+                    if (!isPrimitive(array.get(i))) return null;
+                    mapping[i] = array.get(i).getAsInt();
+                }
+            }
+            return new CachedEntry(source.getAsString(), docs, mapping);
+        }
+    }
+
+    // Hashes docs independently of the iteration order of their maps
+    private static final class Hasher {
+        private final MessageDigest digest;
+
+        private Hasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void classDoc(@Nullable ClassJavadoc javadoc) {
+            if (marker(javadoc)) {
+                entry(javadoc.clazz());
+                map(javadoc.methods(), this::entry);
+                map(javadoc.fields(), this::entry);
+                map(javadoc.innerClasses(), this::classDoc);
+            }
+        }
+
+        private void entry(@Nullable JavadocEntry entry) {
+            if (marker(entry)) {
+                string(entry.doc());
+                map(entry.tags(), values -> {
+                    digest.update(intBytes(values.size()));
+                    values.forEach(this::string);
+                });
+                strings(entry.parameters());
+                strings(entry.typeParameters());
+            }
+        }
+
+        private <T> void map(@Nullable Map<String, T> map, Consumer<T> valueHasher) {
+            if (marker(map)) {
+                final List<String> keys = new ArrayList<>(map.keySet());
+                keys.sort(null);
+                digest.update(intBytes(keys.size()));
+                for (final String key : keys) {
+                    string(key);
+                    valueHasher.accept(map.get(key));
+                }
+            }
+        }
+
+        private void strings(@Nullable String[] strings) {
+            if (marker(strings)) {
+                digest.update(intBytes(strings.length));
+                for (final String string : strings) {
+                    string(string);
+                }
+            }
+        }
+
+        private void file(String name, Path path) throws IOException {
+            string(name);
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            digest.update(longBytes(attributes.size()));
+            digest.update(longBytes(attributes.lastModifiedTime().toMillis()));
+        }
+
+        private void string(@Nullable String string) {
+            bytes(string == null ? null : string.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void bytes(byte @Nullable [] bytes) {
+            if (marker(bytes)) {
+                digest.update(intBytes(bytes.length));
+                digest.update(bytes);
+            }
+        }
+
+        private boolean marker(@Nullable Object value) {
+            digest.update((byte) (value == null ? 0 : 1));
+            return value != null;
+        }
+
+        private static byte[] intBytes(int value) {
+            return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+
+        private static byte[] longBytes(long value) {
+            final byte[] bytes = new byte[8];
+            for (int i = 0; i < 8; i++) {
+                bytes[i] = (byte) (value >>> (56 - i * 8));
+            }
+            return bytes;
+        }
+
+        private String finish() {
+            final StringBuilder builder = new StringBuilder();
+            for (final byte b : digest.digest()) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -11,12 +11,12 @@ import net.neoforged.javadoctor.spec.JavadocEntry;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -29,7 +29,6 @@ public class JavadocInjector {
         this.javadocProvider = javadocProvider;
     }
 
-    @SuppressWarnings({"UseBulkOperation", "ManualArrayToCollectionCopy"})
     public Result<InjectionResult> injectDocs(
             String path,
             String className,
@@ -40,18 +39,8 @@ public class JavadocInjector {
         final String sourceIn = sourceInIn.replace("\r\n", "\n");
         if (javadocProvider.get(className) == null) return new Result<>(new InjectionResult(mappingIn, sourceIn));
         return parser.parseFromPath(path, sourceIn).map(classes -> {
-            final List<String> newSource = new ArrayList<>();
-            for (final String line : sourceIn.split("\n")) {
-                newSource.add(line);
-            }
-
-            final AtomicInteger offset = new AtomicInteger();
-            final List<Integer> newMapping = new ArrayList<>();
-            if (mappingIn != null) {
-                for (int i : mappingIn) {
-                    newMapping.add(i);
-                }
-            }
+            final SplicedSource newSource = new SplicedSource(sourceIn);
+            final LineMapping newMapping = new LineMapping(mappingIn);
 
             for (final JClass type : classes) {
                 final ClassJavadoc javadoc = javadocProvider.get(type.getFullyQualifiedName());
@@ -59,42 +48,34 @@ public class JavadocInjector {
                     continue;
                 }
 
-                inject(newSource, type, javadoc, offset, newMapping, mappingIn == null);
+                inject(newSource, type, javadoc, newMapping, mappingIn == null);
             }
-            return new InjectionResult(newMapping.stream().mapToInt(i -> i).toArray(), String.join(System.lineSeparator(), newSource));
+            return new InjectionResult(newMapping.build(), newSource.build(System.lineSeparator()));
         });
     }
 
     @SuppressWarnings("all")
-    private void inject(List<String> newSource, JClass declaration, ClassJavadoc javadoc, AtomicInteger offset, List<Integer> mapping, boolean appendLineMappings) {
+    private void inject(SplicedSource newSource, JClass declaration, ClassJavadoc javadoc, LineMapping mapping, boolean appendLineMappings) {
         final List<JElement> members = new ArrayList<>();
         members.addAll(declaration.getChildren());
         Collections.sort(members, Comparator.comparing(r -> r.getSourceLine().orElse(-1)));
 
         if (appendLineMappings) {
-            declaration.getSourceLine().ifPresent(line -> {
-                mapping.add(line);
-                mapping.add(line);
-            });
+            declaration.getSourceLine().ifPresent(mapping::add);
             for (final JElement member : members) {
-                member.getSourceLine().ifPresent(line -> {
-                    mapping.add(line);
-                    mapping.add(line);
-                });
+                member.getSourceLine().ifPresent(mapping::add);
             }
         }
 
         if (javadoc.clazz() != null) {
             declaration.getSourceLine()
                 .ifPresent(line -> {
-                    final int offsetLine = line + offset.get() - 1;
                     final DocFormatter.WithLength formatted = DocFormatter.formatDoc(
-                            findIndent(newSource.get(offsetLine)), javadoc.clazz(),
+                            newSource.getIndent(line), javadoc.clazz(),
                             getParameters(declaration), getTypeParameters(declaration)
                     );
-                    offset.incrementAndGet();
-                    newSource.add(offsetLine, formatted.doc);
-                    pushMappingFix(mapping, line, formatted.length);
+                    newSource.insert(line, formatted.doc);
+                    mapping.shift(line, formatted.length);
                 });
         }
         final Map<String, JavadocEntry> fields = (javadoc.fields() == null ? new HashMap<String, JavadocEntry>() : javadoc.fields()).entrySet()
@@ -107,14 +88,12 @@ public class JavadocInjector {
                 if (entry == null) return;
                 member.getSourceLine()
                         .ifPresent(line -> {
-                            final int offsetLine = line + offset.get() - 1;
                             final DocFormatter.WithLength formatted = DocFormatter.formatDoc(
-                                    findIndent(newSource.get(offsetLine)), entry,
+                                    newSource.getIndent(line), entry,
                                     null, null
                             );
-                            offset.incrementAndGet();
-                            newSource.add(offsetLine, formatted.doc);
-                            pushMappingFix(mapping, line, formatted.length);
+                            newSource.insert(line, formatted.doc);
+                            mapping.shift(line, formatted.length);
                         });
             } else if (member instanceof JMethod) {
                 final JMethod method = (JMethod) member;
@@ -123,22 +102,20 @@ public class JavadocInjector {
                 if (entry == null) return;
                 member.getSourceLine()
                         .ifPresent(line -> {
-                            final int offsetLine = line + offset.get() - 1;
                             final DocFormatter.WithLength formatted = DocFormatter.formatDoc(
-                                    findIndent(newSource.get(offsetLine)), entry,
+                                    newSource.getIndent(line), entry,
                                     method.getParameters().stream()
                                             .map(JParameter::getName).collect(Collectors.toList()),
                                     getTypeParameters(method)
                             );
-                            offset.incrementAndGet();
-                            newSource.add(offsetLine, formatted.doc);
-                            pushMappingFix(mapping, line, formatted.length);
+                            newSource.insert(line, formatted.doc);
+                            mapping.shift(line, formatted.length);
                         });
             } else if (member instanceof JClass) {
                 final JClass type = (JClass) member;
                 final ClassJavadoc innerDoc = javadoc.innerClasses().get(type.getName());
                 if (innerDoc != null) {
-                    inject(newSource, type, innerDoc, offset, mapping, appendLineMappings);
+                    inject(newSource, type, innerDoc, mapping, appendLineMappings);
                 }
             }
         };
@@ -169,25 +146,172 @@ public class JavadocInjector {
         return null;
     }
 
-    private static void pushMappingFix(List<Integer> mapping, int start, int amount) {
-        for (int i = 0; i < mapping.size(); i += 2) {
-            int originalLine = mapping.get(i);
-            if (originalLine >= start) {
-                mapping.set(i + 1, mapping.get(i + 1) + amount);
+    /**
+     * A ForgeFlower line mapping, made of pairs of an original line and the line it is now found at.
+     * Shifts only apply to the pairs that exist when they are made, and are all resolved at once when the mapping is built.
+     */
+    private static final class LineMapping {
+        private int[] pairs;
+        private int size;
+        // The amount of shifts made before each pair was added
+        private int[] addedAt;
+
+        private int[] shiftLines = new int[16];
+        private int[] shiftAmounts = new int[16];
+        private int shifts;
+
+        private LineMapping(int @Nullable [] mapping) {
+            this.pairs = mapping == null ? new int[16] : Arrays.copyOf(mapping, Math.max(16, mapping.length));
+            this.size = mapping == null ? 0 : mapping.length;
+            this.addedAt = new int[Math.max(8, pairs.length / 2)];
+        }
+
+        /**
+         * Adds a pair mapping the line to itself.
+         */
+        public void add(int line) {
+            if (size + 2 > pairs.length) {
+                pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                addedAt = Arrays.copyOf(addedAt, pairs.length / 2);
+            }
+            addedAt[size / 2] = shifts;
+            pairs[size++] = line;
+            pairs[size++] = line;
+        }
+
+        /**
+         * Moves the pairs whose original line is at least {@code start} down by {@code amount} lines.
+         */
+        public void shift(int start, int amount) {
+            if (shifts == shiftLines.length) {
+                shiftLines = Arrays.copyOf(shiftLines, shifts * 2);
+                shiftAmounts = Arrays.copyOf(shiftAmounts, shifts * 2);
             }
+            shiftLines[shifts] = start;
+            shiftAmounts[shifts++] = amount;
+        }
+
+        public int[] build() {
+            int maxLine = 0;
+            for (int i = 0; i < shifts; i++) {
+                maxLine = Math.max(maxLine, shiftLines[i]);
+            }
+
+            // A Fenwick tree of the amounts shifted at each original line, so that the amount shifted at or before a line is a prefix sum.
+            // Pairs are added in order, so walking them backwards only ever needs to add the shifts made after them
+            final int[] tree = new int[maxLine + 1];
+            final int[] result = Arrays.copyOf(pairs, size);
+            int shift = shifts;
+            for (int pair = size / 2 - 1; pair >= 0; pair--) {
+                while (shift > addedAt[pair]) {
+                    shift--;
+                    if (shiftLines[shift] < 1) continue;
+                    for (int i = shiftLines[shift]; i <= maxLine; i += i & -i) {
+                        tree[i] += shiftAmounts[shift];
+                    }
+                }
+
+                for (int i = Math.min(result[pair * 2], maxLine); i > 0; i -= i & -i) {
+                    result[pair * 2 + 1] += tree[i];
+                }
+            }
+            return result;
         }
     }
 
-    private static String findIndent(String line) {
-        final StringBuilder builder = new StringBuilder();
-        for (final char ch : line.toCharArray()) {
-            if (ch == '\t' || ch == ' ') {
-                builder.append(ch);
-            } else {
-                break;
+    /**
+     * A source split into lines, into which text can be inserted before any line.
+     * The insertions are only applied once the new source is built, in a single pass over the original source.
+     */
+    private static final class SplicedSource {
+        private final String source;
+        // The start of each line, followed by the end of the last line
+        private final int[] lineStarts;
+        private final int lineCount;
+        private final List<Insertion> insertions = new ArrayList<>();
+
+        private SplicedSource(String source) {
+            this.source = source;
+            int newLines = 0;
+            for (int i = 0; i < source.length(); i++) {
+                if (source.charAt(i) == '\n') newLines++;
+            }
+            this.lineStarts = new int[newLines + 2];
+            int line = 1;
+            for (int i = 0; i < source.length(); i++) {
+                if (source.charAt(i) == '\n') {
+                    lineStarts[line++] = i + 1;
+                }
             }
+            lineStarts[line] = source.length() + 1;
+
+            // Mirror String#split, which drops trailing empty lines unless the source has a single line
+            int count = newLines + 1;
+            if (newLines > 0) {
+                while (count > 0 && lineStarts[count] - 1 == lineStarts[count - 1]) {
+                    count--;
+                }
+            }
+            this.lineCount = count;
+        }
+
+        public String getIndent(int line) {
+            if (line < 1 || line > lineCount) {
+                throw new IndexOutOfBoundsException("Line " + line + " is out of bounds for a source with " + lineCount + " lines");
+            }
+            final int start = lineStarts[line - 1];
+            final int end = lineStarts[line] - 1;
+            int indentEnd = start;
+            while (indentEnd < end && (source.charAt(indentEnd) == '\t' || source.charAt(indentEnd) == ' ')) {
+                indentEnd++;
+            }
+            return source.substring(start, indentEnd);
+        }
+
+        /**
+         * Inserts the text as a new line before the given original line. Texts inserted before the same line keep their insertion order.
+         */
+        public void insert(int line, String text) {
+            if (line < 1 || line > lineCount) {
+                throw new IndexOutOfBoundsException("Line " + line + " is out of bounds for a source with " + lineCount + " lines");
+            }
+            insertions.add(new Insertion(line, text));
+        }
+
+        public String build(String lineSeparator) {
+            // List#sort is stable, so insertions before the same line stay in order
+            insertions.sort(Comparator.comparingInt(i -> i.line));
+
+            // The original lines end with a single \n, which is replaced by the separator, and each inserted line adds a separator
+            final int separators = Math.max(0, lineCount - 1) + insertions.size();
+            int length = Math.max(0, lineStarts[lineCount] - 1 - Math.max(0, lineCount - 1)) + separators * lineSeparator.length();
+            for (final Insertion insertion : insertions) {
+                length += insertion.text.length();
+            }
+
+            final StringBuilder builder = new StringBuilder(length);
+            int insertion = 0;
+            for (int line = 1; line <= lineCount; line++) {
+                while (insertion < insertions.size() && insertions.get(insertion).line == line) {
+                    builder.append(insertions.get(insertion++).text).append(lineSeparator);
+                }
+                builder.append(source, lineStarts[line - 1], lineStarts[line] - 1);
+                if (line != lineCount) {
+                    builder.append(lineSeparator);
+                }
+            }
+            return builder.toString();
+        }
+    }
+
+    private static final class Insertion {
+        private final int line;
+        private final String text;
+
+        private Insertion(int line, String text) {
+            this.line = line;
+            this.text = text;
         }
-        return builder.toString();
     }
 
     public static final class InjectionResult {
@@ -1,43 +1,64 @@
 package net.neoforged.javadoctor.injector;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
+import net.neoforged.javadoctor.injector.ast.JClassParser;
+import net.neoforged.javadoctor.injector.zip.ZipReader;
+import net.neoforged.javadoctor.injector.zip.ZipWriter;
+import net.neoforged.javadoctor.io.binary.BinaryDoctor;
+import net.neoforged.javadoctor.io.binary.BinaryJDocIO;
 import net.neoforged.javadoctor.io.gson.GsonJDocIO;
+import net.neoforged.javadoctor.spec.JavadoctorInformation;
+import net.neoforged.javadoctor.spec.ShardManifest;
+import net.neoforged.javadoctor.spec.StringPool;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.Reader;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 public class Main {
     public static void main(String[] args) throws Exception {
         OptionParser parser = new OptionParser();
         OptionSpec<File> inputO = parser.accepts("input", "Input jar file").withRequiredArg().ofType(File.class).required();
         OptionSpec<File> outputO = parser.accepts("output", "Output jar file").withRequiredArg().ofType(File.class).required();
-        OptionSpec<File> jsonO = parser.accepts("doctor", "The Javadoctor json file(s)").withRequiredArg().ofType(File.class);
+        OptionSpec<File> jsonO = parser.accepts("doctor", "The Javadoctor json or binary file(s), or directories of sharded doctors").withRequiredArg().ofType(File.class);
         OptionSpec<File> classpathO = parser.accepts("classpath", "The classpath to use when resolving classes").withRequiredArg().ofType(File.class);
         OptionSpec<Integer> javaVersion = parser.accepts("java-version", "The version of Java to use for parsing").withRequiredArg().ofType(Integer.class).required();
+        OptionSpec<Integer> threadsO = parser.accepts("threads", "The amount of threads to inject docs with. Each thread uses its own class parser").withRequiredArg().ofType(Integer.class).defaultsTo(1);
+        OptionSpec<Void> incrementalO = parser.accepts("incremental", "Copy the sources whose contents and docs did not change since the last run from the previous output jar, instead of injecting them again");
         OptionSet options;
         try {
             options = parser.parse(args);
@@ -49,105 +70,206 @@ public class Main {
             return;
         }
 
-        final List<JavadocProvider> providers = new ArrayList<>();
-        try (final FileSystem in = FileSystems.newFileSystem(options.valueOf(inputO).toPath(), (ClassLoader) null)) {
-            final Path javadoctorJson = in.getPath("javadoctor.json");
-            if (Files.exists(javadoctorJson)) {
-                try (final Reader is = Files.newBufferedReader(javadoctorJson)) {
-                    providers.add(GsonJDocIO.read(GsonJDocIO.GSON, GsonJDocIO.GSON.fromJson(is, JsonObject.class)).getClassDocs()::get);
+        final int threads = options.valueOf(threadsO);
+        if (threads < 1) {
+            System.err.println("Error: The amount of threads must be at least 1, but was " + threads);
+            System.exit(1);
+            return;
+        }
+
+        // The input is only indexed once, and is used both to find an embedded doctor file and to iterate the entries
+        try (final ZipReader input = ZipReader.map(options.valueOf(inputO).toPath())) {
+            // Only the docs of the classes of the input are looked up, so sharded doctors only need the shards of its packages
+            final Set<String> packages = new HashSet<>();
+            for (final ZipReader.Entry entry : input.getEntries()) {
+                if (entry.name.endsWith(".java")) {
+                    final int end = entry.name.lastIndexOf('/');
+                    packages.add(end == -1 ? "" : entry.name.substring(0, end).replace('/', '.'));
                 }
             }
-        }
 
-        final List<File> doctors = options.valuesOf(jsonO);
-        if (providers.isEmpty() && doctors.isEmpty()) {
-            System.err.println("No doctor files have been specified and none could be found in the input jar!");
-            System.exit(1);
-        }
+            final DoctorSources doctors = new DoctorSources(packages);
+            // Prefer the binary doctor when the collector wrote one, as it is cheaper to load
+            ZipReader.Entry embeddedDoctor = input.getEntry("javadoctor.bin");
+            if (embeddedDoctor == null) {
+                embeddedDoctor = input.getEntry("javadoctor.json");
+            }
+            final ZipReader.Entry embeddedManifest = input.getEntry("javadoctor/" + ShardManifest.FILE_NAME);
+            if (embeddedDoctor != null) {
+                doctors.add(input.read(embeddedDoctor));
+            } else if (embeddedManifest != null) {
+                doctors.addSharded(readManifest(new ByteArrayInputStream(input.read(embeddedManifest))), shard -> {
+                    final ZipReader.Entry entry = input.getEntry("javadoctor/" + shard);
+                    if (entry == null) {
+                        throw new IOException("Missing doctor shard " + shard + " in the input jar");
+                    }
+                    return doctors.open(input.read(entry));
+                });
+            }
 
-        for (final File doctor : doctors) {
-            try (final Reader is = new FileReader(doctor)) {
-                providers.add(GsonJDocIO.read(GsonJDocIO.GSON, GsonJDocIO.GSON.fromJson(is, JsonObject.class)).getClassDocs()::get);
+            final List<File> doctorFiles = options.valuesOf(jsonO);
+            if (embeddedDoctor == null && embeddedManifest == null && doctorFiles.isEmpty()) {
+                System.err.println("No doctor files have been specified and none could be found in the input jar!");
+                System.exit(1);
+            }
+
+            for (final File doctor : doctorFiles) {
+                final Path path = doctor.toPath();
+                if (Files.isDirectory(path)) {
+                    doctors.addSharded(readManifest(Files.newInputStream(path.resolve(ShardManifest.FILE_NAME))), shard -> doctors.open(path.resolve(shard)));
+                } else {
+                    doctors.add(path);
+                }
             }
-        }
 
-        final ClassParserFactory factory = ServiceLoader.load(ClassParserFactory.class)
-                .iterator().next();
+            final JavadocProvider provider = doctors.build();
 
-        final JavadocInjector injector = new JavadocInjector(
-                factory.createParser(options.valuesOf(classpathO), options.valueOf(inputO), options.valueOf(javaVersion)),
-                new CombiningJavadocProvider(providers)
-        );
+            final ClassParserFactory factory = ServiceLoader.load(ClassParserFactory.class)
+                    .iterator().next();
+
+            // Class parsers are not guaranteed to be thread-safe, so each thread gets its own
+            final ThreadLocal<JClassParser> parsers = ThreadLocal.withInitial(() -> {
+                try {
+                    return factory.createParser(options.valuesOf(classpathO), options.valueOf(inputO), options.valueOf(javaVersion));
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
 
-        final Path out = options.valueOf(outputO).toPath();
-        Files.createDirectories(out.getParent());
-
-        try (final ZipInputStream input = new ZipInputStream(new FileInputStream(options.valueOf(inputO)));
-             final ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(out))) {
-            ZipEntry next;
-            while ((next = input.getNextEntry()) != null) {
-                final ZipEntry newEntry = new ZipEntry(next);
-                if (next.getName().endsWith(".java")) {
-                    final byte[] bytes = readAllBytes(input);
-                    final Result<JavadocInjector.InjectionResult> result = injector.injectDocs(
-                            next.getName(),
-                            next.getName().substring(0, next.getName().length() - 5).replace('/', '.'),
-                            new String(bytes, StandardCharsets.UTF_8),
-                            getMappings(next)
-                    );
-                    if (result.getResult().isPresent()) {
-                        final JavadocInjector.InjectionResult res = result.getResult().get();
-                        if (res.mapping != null) {
-                            newEntry.setExtra(getCodeLineData(res.mapping));
+            final Path out = options.valueOf(outputO).toPath();
+            Files.createDirectories(out.getParent());
+
+            // The output of a parser may change with its classpath, so a different one, or different contents, invalidate the whole cache,
+            // as does a different version of the injector or of the parser
+            final IncrementalCache cache = options.has(incrementalO) ? IncrementalCache.load(out, factory.getName() + ";" + options.valueOf(javaVersion) + ";"
+                    + IncrementalCache.hashImplementation(Main.class, factory.getClass()) + ";" + IncrementalCache.hashClasspath(options.valuesOf(classpathO))) : null;
+            // The previous output is read while the new one is written, so write to a temporary file first
+            final Path target = cache == null ? out : out.resolveSibling(out.getFileName() + ".tmp");
+
+            final ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+            // Entries are written in their original order, so only keep a limited amount of them in flight
+            final int maxPending = threads * 4;
+            final Deque<Future<ProcessedEntry>> pending = new ArrayDeque<>();
+
+            try (final ZipWriter output = ZipWriter.create(target)) {
+                for (final ZipReader.Entry entry : input.getEntries()) {
+                    if (entry.name.endsWith(".java")) {
+                        if (executor == null) {
+                            write(output, cache, injectDocs(parsers.get(), provider, cache, input, entry));
+                        } else {
+                            pending.add(executor.submit(() -> injectDocs(parsers.get(), provider, cache, input, entry)));
                         }
-                        output.putNextEntry(newEntry);
-                        output.write(res.newSource.getBytes(StandardCharsets.UTF_8));
+                    } else if (pending.isEmpty()) {
+                        output.copy(input, entry);
                     } else {
-                        System.err.println("Encountered problems parsing class " + next.getName() + ":");
-                        result.getProblems().forEach(System.err::println);
-                        output.putNextEntry(newEntry);
-                        output.write(bytes);
+                        pending.add(CompletableFuture.completedFuture(ProcessedEntry.copied(entry, input.getLocalExtra(entry), input, entry, Collections.emptyList(), null)));
                     }
-                } else {
-                    output.putNextEntry(newEntry);
-                    if (!newEntry.isDirectory()) {
-                        copy(input, output);
+
+                    while (pending.size() > maxPending) {
+                        write(output, cache, pending.remove().get());
                     }
                 }
-                output.closeEntry();
+
+                while (!pending.isEmpty()) {
+                    write(output, cache, pending.remove().get());
+                }
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
+                }
+                if (cache != null) {
+                    cache.close();
+                }
+            }
+
+            if (cache != null) {
+                Files.move(target, out, StandardCopyOption.REPLACE_EXISTING);
+                cache.save();
             }
         }
     }
 
-    private static void copy(InputStream source, OutputStream target) throws IOException {
-        byte[] buf = new byte[8192];
-        int length;
-        while ((length = source.read(buf)) != -1) {
-            target.write(buf, 0, length);
+    private static ProcessedEntry injectDocs(JClassParser parser, JavadocProvider provider, @Nullable IncrementalCache cache, ZipReader input, ZipReader.Entry entry) throws IOException {
+        final byte[] bytes = input.read(entry);
+        final byte[] extra = input.getLocalExtra(entry);
+        if (cache == null) {
+            return injectDocs(new JavadocInjector(parser, provider), input, entry, bytes, extra, null);
+        }
+
+        final String sourceHash = IncrementalCache.hashSource(bytes, extra);
+        final IncrementalCache.Reused reused = cache.reuse(entry.name, sourceHash, clazz -> IncrementalCache.hashDocs(provider.get(clazz)));
+        if (reused != null) {
+            return ProcessedEntry.copied(entry, reused.entry.mapping == null ? extra : getCodeLineData(reused.entry.mapping), reused.source, reused.data, Collections.emptyList(), reused.entry);
         }
+
+        // Record the docs the injection depends on, so that it can be redone when any of them change
+        final Set<String> lookedUp = new LinkedHashSet<>();
+        final JavadocProvider recordingProvider = clazz -> {
+            lookedUp.add(clazz);
+            return provider.get(clazz);
+        };
+        return injectDocs(new JavadocInjector(parser, recordingProvider), input, entry, bytes, extra, mapping -> {
+            final Map<String, String> docHashes = new LinkedHashMap<>();
+            for (final String clazz : lookedUp) {
+                docHashes.put(clazz, IncrementalCache.hashDocs(provider.get(clazz)));
+            }
+            return new IncrementalCache.CachedEntry(sourceHash, docHashes, mapping);
+        });
     }
 
-    private static byte[] readAllBytes(InputStream inputStream) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int nRead;
-        byte[] data = new byte[16384];
-        while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
+    private static ProcessedEntry injectDocs(JavadocInjector injector, ZipReader input, ZipReader.Entry entry, byte[] bytes, byte[] extra, @Nullable Function<int[], IncrementalCache.CachedEntry> cacheFactory) {
+        final String source = new String(bytes, StandardCharsets.UTF_8);
+        final int[] mapping = getMappings(entry.name, extra);
+        final Result<JavadocInjector.InjectionResult> result = injector.injectDocs(
+                entry.name,
+                entry.name.substring(0, entry.name.length() - 5).replace('/', '.'),
+                source,
+                mapping
+        );
+        if (result.getResult().isPresent()) {
+            final JavadocInjector.InjectionResult res = result.getResult().get();
+            // Classes without docs come back unchanged, so their compressed data can be copied as is
+            if (res.newSource.equals(source) && Arrays.equals(res.mapping, mapping)) {
+                return ProcessedEntry.copied(entry, extra, input, entry, Collections.emptyList(),
+                        cacheFactory == null ? null : cacheFactory.apply(res.mapping));
+            }
+            return ProcessedEntry.rewritten(entry, res.mapping == null ? extra : getCodeLineData(res.mapping), res.newSource.getBytes(StandardCharsets.UTF_8),
+                    cacheFactory == null ? null : cacheFactory.apply(res.mapping));
+        }
+        return ProcessedEntry.copied(entry, extra, input, entry, result.getProblems(), null);
+    }
+
+    private static void write(ZipWriter output, @Nullable IncrementalCache cache, ProcessedEntry entry) throws IOException {
+        if (!entry.problems.isEmpty()) {
+            System.err.println("Encountered problems parsing class " + entry.entry.name + ":");
+            entry.problems.forEach(System.err::println);
+        }
+        if (cache != null && entry.cached != null) {
+            cache.record(entry.entry.name, entry.cached);
+        }
+        if (entry.data != null) {
+            output.write(entry.entry, entry.extra, entry.data);
+        } else {
+            output.copy(entry.entry, entry.extra, entry.source, entry.sourceEntry);
+        }
+    }
+
+    private static ShardManifest readManifest(InputStream in) throws IOException {
+        try (final JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return GsonJDocIO.readManifest(reader);
         }
-        buffer.flush();
-        return buffer.toByteArray();
     }
 
     @Nullable
-    private static int[] getMappings(ZipEntry entry) throws IOException {
-        if (entry.getExtra() == null || entry.getExtra().length < 5) return null;
-        final ByteBuffer buf = ByteBuffer.wrap(entry.getExtra());
+    private static int[] getMappings(String name, byte @Nullable [] extra) {
+        if (extra == null || extra.length < 5) return null;
+        final ByteBuffer buf = ByteBuffer.wrap(extra);
         buf.order(ByteOrder.LITTLE_ENDIAN);
         if (buf.getShort() != 0x4646) return null;
         final int length = (buf.getShort() - 1) / 2;
         final byte version = buf.get();
         if (version != 1) {
-            throw new IllegalArgumentException("Unknown mapping file version: " + version + ". entry: " + entry.getName());
+            throw new IllegalArgumentException("Unknown mapping file version: " + version + ". entry: " + name);
         }
         final int[] mapping = new int[length];
         for (int i = 0; i < length; i++) {
@@ -171,4 +293,153 @@ public class Main {
         }
         return buf.array();
     }
+
+    /**
+     * The doctors to inject docs from, in order of precedence.
+     * Binary doctors are decoded lazily, while json doctors are merged up-front, so that lookups don't need to, and so that the parsed files can be dropped.
+     */
+    private static final class DoctorSources {
+        // Binary doctors are usually large shared files, of which only a few classes are needed at a time
+        private static final int CACHE_SIZE = 1024;
+
+        private final List<JavadocProvider> providers = new ArrayList<>();
+        private final List<JavadoctorInformation> json = new ArrayList<>();
+        // Shared by all json doctors, whose strings largely overlap
+        private final StringPool pool = new StringPool();
+        private final Set<String> packages;
+
+        private DoctorSources(Set<String> packages) {
+            this.packages = packages;
+        }
+
+        public void add(byte[] bytes) throws IOException {
+            if (BinaryJDocIO.isBinary(bytes)) {
+                addBinary(ByteBuffer.wrap(bytes));
+            } else {
+                json.add(readJson(bytes));
+            }
+        }
+
+        public void add(Path path) throws IOException {
+            final ByteBuffer binary = mapBinary(path);
+            if (binary != null) {
+                addBinary(binary);
+                return;
+            }
+            json.add(readJson(path));
+        }
+
+        /**
+         * Adds the docs of a sharded doctor, of which only the shards of the packages of the input are opened.
+         */
+        public void addSharded(ShardManifest manifest, ShardOpener opener) throws IOException {
+            final Map<String, JavadocProvider> shards = new HashMap<>();
+            for (final Map.Entry<String, String> shard : manifest.getShards().entrySet()) {
+                if (packages.contains(shard.getKey())) {
+                    shards.put(shard.getKey(), opener.open(shard.getValue()));
+                }
+            }
+            mergeJson();
+            providers.add(new ShardedDoctorProvider(shards));
+        }
+
+        /**
+         * Opens a doctor on its own, rather than merging it with the other json doctors.
+         */
+        public JavadocProvider open(byte[] bytes) throws IOException {
+            if (BinaryJDocIO.isBinary(bytes)) {
+                return new BinaryDoctorProvider(BinaryDoctor.open(ByteBuffer.wrap(bytes)), CACHE_SIZE);
+            }
+            return DoctorIndex.build(Collections.singletonList(readJson(bytes)));
+        }
+
+        public JavadocProvider open(Path path) throws IOException {
+            final ByteBuffer binary = mapBinary(path);
+            if (binary != null) {
+                return new BinaryDoctorProvider(BinaryDoctor.open(binary), CACHE_SIZE);
+            }
+            return DoctorIndex.build(Collections.singletonList(readJson(path)));
+        }
+
+        @Nullable
+        private static ByteBuffer mapBinary(Path path) throws IOException {
+            try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                final ByteBuffer header = ByteBuffer.allocate(BinaryJDocIO.HEADER_SIZE);
+                int read = 0;
+                while (header.hasRemaining() && read >= 0) {
+                    read = channel.read(header, header.position());
+                }
+                if (BinaryJDocIO.isBinary(header.array())) {
+                    // The mapping stays valid once the channel is closed
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            return null;
+        }
+
+        private JavadoctorInformation readJson(byte[] bytes) throws IOException {
+            try (final JsonReader is = new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))) {
+                return GsonJDocIO.read(is, pool);
+            }
+        }
+
+        private JavadoctorInformation readJson(Path path) throws IOException {
+            try (final JsonReader is = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+                return GsonJDocIO.read(is, pool);
+            }
+        }
+
+        private void addBinary(ByteBuffer buffer) throws IOException {
+            mergeJson();
+            providers.add(new BinaryDoctorProvider(BinaryDoctor.open(buffer), CACHE_SIZE));
+        }
+
+        // Merge the json doctors added since the last binary one, as merging them with docs of other doctors in between would change their precedence
+        private void mergeJson() {
+            if (!json.isEmpty()) {
+                providers.add(DoctorIndex.build(json));
+                json.clear();
+            }
+        }
+
+        public JavadocProvider build() {
+            mergeJson();
+            return providers.size() == 1 ? providers.get(0) : new CombiningJavadocProvider(providers, CACHE_SIZE);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ShardOpener {
+        JavadocProvider open(String shard) throws IOException;
+    }
+
+    private static final class ProcessedEntry {
+        private final ZipReader.Entry entry;
+        private final byte @Nullable [] extra;
+        // The new contents of the entry, or null if the compressed data of the source entry should be copied instead
+        private final byte @Nullable [] data;
+        private final ZipReader source;
+        private final ZipReader.Entry sourceEntry;
+        private final List<String> problems;
+        @Nullable
+        private final IncrementalCache.CachedEntry cached;
+
+        private ProcessedEntry(ZipReader.Entry entry, byte @Nullable [] extra, byte @Nullable [] data, ZipReader source, ZipReader.Entry sourceEntry, List<String> problems, @Nullable IncrementalCache.CachedEntry cached) {
+            this.entry = entry;
+            this.extra = extra;
+            this.data = data;
+            this.source = source;
+            this.sourceEntry = sourceEntry;
+            this.problems = problems;
+            this.cached = cached;
+        }
+
+        private static ProcessedEntry rewritten(ZipReader.Entry entry, byte @Nullable [] extra, byte[] data, @Nullable IncrementalCache.CachedEntry cached) {
+            return new ProcessedEntry(entry, extra, data, null, null, Collections.emptyList(), cached);
+        }
+
+        private static ProcessedEntry copied(ZipReader.Entry entry, byte @Nullable [] extra, ZipReader source, ZipReader.Entry sourceEntry, List<String> problems, @Nullable IncrementalCache.CachedEntry cached) {
+            return new ProcessedEntry(entry, extra, null, source, sourceEntry, problems, cached);
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package net.neoforged.javadoctor.injector;
+
+import net.neoforged.javadoctor.spec.ClassJavadoc;
+import net.neoforged.javadoctor.spec.ShardManifest;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * A provider of docs split into a doctor file per package, which looks classes up in the doctor of their package only.
+ * Packages without a doctor have no docs, so the doctors of the packages which aren't injected into don't need to be loaded.
+ */
+public class ShardedDoctorProvider implements JavadocProvider {
+    private final Map<String, JavadocProvider> packages;
+
+    public ShardedDoctorProvider(Map<String, JavadocProvider> packages) {
+        this.packages = packages;
+    }
+
+    @Nullable
+    @Override
+    public ClassJavadoc get(String className) {
+        final JavadocProvider provider = packages.get(ShardManifest.getPackage(className));
+        return provider == null ? null : provider.get(className);
+    }
+}
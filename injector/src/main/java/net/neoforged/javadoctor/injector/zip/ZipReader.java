@@ -0,0 +1,371 @@
+package net.neoforged.javadoctor.injector.zip;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * A zip reader which indexes the central directory of a file and gives access to both the
+ * compressed and the uncompressed data of its entries.
+ */
+public final class ZipReader implements Closeable {
+    static final int LOC_SIG = 0x04034b50;
+    static final int CEN_SIG = 0x02014b50;
+    static final int END_SIG = 0x06054b50;
+    static final int ZIP64_END_SIG = 0x06064b50;
+    static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    static final int ZIP64_EXTRA = 0x0001;
+    static final int LOC_HEADER = 30;
+    static final int CEN_HEADER = 46;
+    static final int END_HEADER = 22;
+    static final int ZIP64_LOCATOR = 20;
+    static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private final FileChannel channel;
+    @Nullable
+    private final ByteBuffer mapped;
+    private final List<Entry> entries;
+    private final Map<String, Entry> byName;
+
+    private ZipReader(FileChannel channel, @Nullable ByteBuffer mapped) throws IOException {
+        this.channel = channel;
+        this.mapped = mapped;
+        final List<Entry> entries = readCentralDirectory();
+        this.entries = Collections.unmodifiableList(entries);
+        this.byName = new HashMap<>(entries.size() * 2);
+        for (final Entry entry : entries) {
+            byName.putIfAbsent(entry.name, entry);
+        }
+    }
+
+    /**
+     * Opens a reader which reads the file through positional reads of a {@link FileChannel}.
+     */
+    public static ZipReader open(Path path) throws IOException {
+        return open(path, false);
+    }
+
+    /**
+     * Opens a reader which memory-maps the file, if it is small enough to be mapped at once.
+     * A mapped file cannot be replaced on some platforms until the mapping is garbage collected, even after the reader is closed.
+     */
+    public static ZipReader map(Path path) throws IOException {
+        return open(path, true);
+    }
+
+    private static ZipReader open(Path path, boolean map) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            return new ZipReader(channel, map && size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null);
+        } catch (IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Returns the entries of the zip, in the order of their data in the file.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Nullable
+    public Entry getEntry(String name) {
+        return byName.get(name);
+    }
+
+    public byte[] getLocalExtra(Entry entry) throws IOException {
+        resolveLocalHeader(entry);
+        return entry.localExtra;
+    }
+
+    public byte[] read(Entry entry) throws IOException {
+        resolveLocalHeader(entry);
+        if (entry.size > Integer.MAX_VALUE - 8) {
+            throw new ZipException("Entry " + entry.name + " is too large to be read into memory");
+        }
+        final byte[] data = new byte[(int) entry.size];
+        if (entry.method == ZipEntry.STORED) {
+            read(entry.dataOffset, data);
+        } else if (entry.method == ZipEntry.DEFLATED) {
+            final byte[] compressed = new byte[(int) entry.compressedSize];
+            read(entry.dataOffset, compressed);
+            final Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed);
+                int read = 0;
+                while (read < data.length) {
+                    final int n = inflater.inflate(data, read, data.length - read);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    read += n;
+                }
+                if (read != data.length) {
+                    throw new ZipException("Invalid entry size of " + entry.name + ": expected " + data.length + " but got " + read);
+                }
+            } catch (DataFormatException exception) {
+                throw new ZipException("Invalid deflated data of " + entry.name + ": " + exception.getMessage());
+            } finally {
+                inflater.end();
+            }
+        } else {
+            throw new ZipException("Unsupported compression method " + entry.method + " of entry " + entry.name);
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        if (crc.getValue() != entry.crc) {
+            throw new ZipException("Invalid CRC of entry " + entry.name);
+        }
+        return data;
+    }
+
+    /**
+     * Transfers the compressed data of the entry to the target as-is.
+     */
+    void transferCompressed(Entry entry, WritableByteChannel target) throws IOException {
+        resolveLocalHeader(entry);
+        long position = entry.dataOffset;
+        long remaining = entry.compressedSize;
+        while (remaining > 0) {
+            final long transferred = channel.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                throw new EOFException("Unexpected end of zip while copying entry " + entry.name);
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void resolveLocalHeader(Entry entry) throws IOException {
+        if (entry.dataOffset != -1) return;
+        final ByteBuffer header = slice(entry.localHeaderOffset, LOC_HEADER);
+        if (header.getInt(0) != LOC_SIG) {
+            throw new ZipException("Invalid local header of entry " + entry.name);
+        }
+        final int nameLength = header.getShort(26) & 0xFFFF;
+        final int extraLength = header.getShort(28) & 0xFFFF;
+        final byte[] extra = new byte[extraLength];
+        read(entry.localHeaderOffset + LOC_HEADER + nameLength, extra);
+        entry.localExtra = extra;
+        entry.dataOffset = entry.localHeaderOffset + LOC_HEADER + nameLength + extraLength;
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        final long fileSize = channel.size();
+        final int tailSize = (int) Math.min(fileSize, END_HEADER + 0xFFFF);
+        final ByteBuffer tail = slice(fileSize - tailSize, tailSize);
+
+        int endPos = -1;
+        for (int i = tailSize - END_HEADER; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIG && i + END_HEADER + (tail.getShort(i + 20) & 0xFFFF) == tailSize) {
+                endPos = i;
+                break;
+            }
+        }
+        if (endPos == -1) {
+            throw new ZipException("Could not find the end of the central directory");
+        }
+
+        long entryCount = tail.getShort(endPos + 10) & 0xFFFF;
+        long cenSize = tail.getInt(endPos + 12) & ZIP64_MAGIC;
+        long cenOffset = tail.getInt(endPos + 16) & ZIP64_MAGIC;
+        if ((entryCount == 0xFFFF || cenSize == ZIP64_MAGIC || cenOffset == ZIP64_MAGIC) && endPos >= ZIP64_LOCATOR
+                && tail.getInt(endPos - ZIP64_LOCATOR) == ZIP64_LOCATOR_SIG) {
+            final ByteBuffer zip64End = slice(tail.getLong(endPos - ZIP64_LOCATOR + 8), 56);
+            if (zip64End.getInt(0) != ZIP64_END_SIG) {
+                throw new ZipException("Invalid zip64 end of central directory");
+            }
+            entryCount = zip64End.getLong(32);
+            cenSize = zip64End.getLong(40);
+            cenOffset = zip64End.getLong(48);
+        }
+
+        if (cenSize > Integer.MAX_VALUE || entryCount > Integer.MAX_VALUE) {
+            throw new ZipException("Central directory is too large");
+        }
+        final ByteBuffer cen = slice(cenOffset, (int) cenSize);
+
+        final List<Entry> entries = new ArrayList<>((int) entryCount);
+        int pos = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (pos + CEN_HEADER > cen.limit() || cen.getInt(pos) != CEN_SIG) {
+                throw new ZipException("Invalid central directory header");
+            }
+            final int nameLength = cen.getShort(pos + 28) & 0xFFFF;
+            final int extraLength = cen.getShort(pos + 30) & 0xFFFF;
+            final int commentLength = cen.getShort(pos + 32) & 0xFFFF;
+            final Entry entry = new Entry(
+                    bytes(cen, pos + CEN_HEADER, nameLength),
+                    cen.getShort(pos + 4),
+                    cen.getShort(pos + 6),
+                    cen.getShort(pos + 8) & 0xFFFF,
+                    cen.getShort(pos + 10) & 0xFFFF,
+                    cen.getInt(pos + 12),
+                    cen.getInt(pos + 16) & ZIP64_MAGIC,
+                    cen.getInt(pos + 20) & ZIP64_MAGIC,
+                    cen.getInt(pos + 24) & ZIP64_MAGIC,
+                    cen.getShort(pos + 36),
+                    cen.getInt(pos + 38),
+                    cen.getInt(pos + 42) & ZIP64_MAGIC,
+                    bytes(cen, pos + CEN_HEADER + nameLength + extraLength, commentLength)
+            );
+            readZip64Extra(entry, cen, pos + CEN_HEADER + nameLength, extraLength);
+            entries.add(entry);
+            pos += CEN_HEADER + nameLength + extraLength + commentLength;
+        }
+
+        // Keep the order in which a stream over the file would find the entries
+        entries.sort(Comparator.comparingLong(e -> e.localHeaderOffset));
+        return entries;
+    }
+
+    private static void readZip64Extra(Entry entry, ByteBuffer cen, int start, int length) throws ZipException {
+        if (entry.size != ZIP64_MAGIC && entry.compressedSize != ZIP64_MAGIC && entry.localHeaderOffset != ZIP64_MAGIC) {
+            return;
+        }
+        int pos = start;
+        while (pos + 4 <= start + length) {
+            final int tag = cen.getShort(pos) & 0xFFFF;
+            final int size = cen.getShort(pos + 2) & 0xFFFF;
+            if (tag == ZIP64_EXTRA) {
+                int off = pos + 4;
+                if (entry.size == ZIP64_MAGIC) {
+                    entry.size = cen.getLong(off);
+                    off += 8;
+                }
+                if (entry.compressedSize == ZIP64_MAGIC) {
+                    entry.compressedSize = cen.getLong(off);
+                    off += 8;
+                }
+                if (entry.localHeaderOffset == ZIP64_MAGIC) {
+                    entry.localHeaderOffset = cen.getLong(off);
+                }
+                return;
+            }
+            pos += 4 + size;
+        }
+        throw new ZipException("Missing zip64 extra field of entry " + entry.name);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int start, int length) {
+        final byte[] bytes = new byte[length];
+        ((ByteBuffer) buffer.duplicate().position(start)).get(bytes);
+        return bytes;
+    }
+
+    private void read(long position, byte[] target) throws IOException {
+        if (mapped != null) {
+            checkBounds(position, target.length);
+            // Duplicate the buffer as its position is not safe to share between threads
+            ((ByteBuffer) mapped.duplicate().position((int) position)).get(target);
+        } else {
+            readFully(ByteBuffer.wrap(target), position);
+        }
+    }
+
+    private ByteBuffer slice(long position, int length) throws IOException {
+        if (mapped != null) {
+            checkBounds(position, length);
+            return ((ByteBuffer) mapped.duplicate().position((int) position).limit((int) position + length)).slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(buffer, position);
+        return buffer;
+    }
+
+    private void checkBounds(long position, int length) throws EOFException {
+        if (position < 0 || position + length > mapped.capacity()) {
+            throw new EOFException("Unexpected end of zip");
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of zip");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    public static final class Entry {
+        final byte[] rawName;
+        public final String name;
+        final short versionMadeBy;
+        final short versionNeeded;
+        final int flags;
+        public final int method;
+        final int dosTime;
+        public final long crc;
+        long compressedSize;
+        long size;
+        final short internalAttributes;
+        final int externalAttributes;
+        long localHeaderOffset;
+        final byte[] comment;
+
+        long dataOffset = -1;
+        byte[] localExtra;
+
+        private Entry(byte[] rawName, short versionMadeBy, short versionNeeded, int flags, int method, int dosTime, long crc, long compressedSize, long size, short internalAttributes, int externalAttributes, long localHeaderOffset, byte[] comment) {
+            this.rawName = rawName;
+            this.name = new String(rawName, StandardCharsets.UTF_8);
+            this.versionMadeBy = versionMadeBy;
+            this.versionNeeded = versionNeeded;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.internalAttributes = internalAttributes;
+            this.externalAttributes = externalAttributes;
+            this.localHeaderOffset = localHeaderOffset;
+            this.comment = comment;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package net.neoforged.javadoctor.injector.zip;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import static net.neoforged.javadoctor.injector.zip.ZipReader.CEN_HEADER;
+import static net.neoforged.javadoctor.injector.zip.ZipReader.CEN_SIG;
+import static net.neoforged.javadoctor.injector.zip.ZipReader.END_HEADER;
+import static net.neoforged.javadoctor.injector.zip.ZipReader.END_SIG;
+import static net.neoforged.javadoctor.injector.zip.ZipReader.LOC_HEADER;
+import static net.neoforged.javadoctor.injector.zip.ZipReader.LOC_SIG;
+import static net.neoforged.javadoctor.injector.zip.ZipReader.ZIP64_END_SIG;
+import static net.neoforged.javadoctor.injector.zip.ZipReader.ZIP64_EXTRA;
+import static net.neoforged.javadoctor.injector.zip.ZipReader.ZIP64_LOCATOR;
+import static net.neoforged.javadoctor.injector.zip.ZipReader.ZIP64_LOCATOR_SIG;
+import static net.neoforged.javadoctor.injector.zip.ZipReader.ZIP64_MAGIC;
+
+/**
+ * A zip writer which writes entries based on the entries of a {@link ZipReader}, either by copying their
+ * compressed data as-is or by compressing new contents for them.
+ */
+public final class ZipWriter implements Closeable {
+    // Bit 3 of the flags marks a data descriptor after the data, which is never needed as we always know the sizes up-front
+    private static final int DATA_DESCRIPTOR_FLAG = 8;
+    // Bits 1 and 2 of the flags describe the deflate level
+    private static final int DEFLATE_LEVEL_FLAGS = 6;
+
+    private final FileChannel channel;
+    // Large enough to always fit a central header with a name, extra and comment of the maximum length
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 18).order(ByteOrder.LITTLE_ENDIAN);
+    private final List<CentralRecord> records = new ArrayList<>();
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private long position;
+
+    private ZipWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    public static ZipWriter create(Path path) throws IOException {
+        return new ZipWriter(FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Copies the entry from the given reader without recompressing it.
+     */
+    public void copy(ZipReader source, ZipReader.Entry entry) throws IOException {
+        copy(entry, source.getLocalExtra(entry), source, entry);
+    }
+
+    /**
+     * Writes an entry with the header of {@code header} and the given extra, using the compressed data of {@code data} from the given reader.
+     */
+    public void copy(ZipReader.Entry header, byte @Nullable [] extra, ZipReader source, ZipReader.Entry data) throws IOException {
+        final CentralRecord record = new CentralRecord(header, extra, data.versionNeeded, data.method, (header.flags & ~(DATA_DESCRIPTOR_FLAG | DEFLATE_LEVEL_FLAGS)) | (data.flags & DEFLATE_LEVEL_FLAGS), data.crc, data.compressedSize, data.size);
+        writeLocalHeader(record);
+        flush();
+        source.transferCompressed(data, channel);
+        position += data.compressedSize;
+    }
+
+    /**
+     * Writes an entry with the header of {@code header}, the given extra and the given uncompressed contents.
+     * The contents are compressed with the method of the header.
+     */
+    public void write(ZipReader.Entry header, byte @Nullable [] extra, byte[] contents) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(contents, 0, contents.length);
+
+        final byte[] compressed;
+        if (header.method == ZipEntry.STORED) {
+            compressed = contents;
+        } else {
+            deflater.reset();
+            deflater.setInput(contents);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(contents.length / 2 + 64);
+            final byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                final int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            compressed = out.toByteArray();
+        }
+
+        final CentralRecord record = new CentralRecord(header, extra, header.versionNeeded, header.method == ZipEntry.STORED ? ZipEntry.STORED : ZipEntry.DEFLATED,
+                header.flags & ~(DATA_DESCRIPTOR_FLAG | DEFLATE_LEVEL_FLAGS), crc.getValue(), compressed.length, contents.length);
+        writeLocalHeader(record);
+        put(compressed);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            final long cenOffset = position;
+            for (final CentralRecord record : records) {
+                writeCentralHeader(record);
+            }
+            final long cenSize = position - cenOffset;
+
+            if (records.size() >= 0xFFFF || cenOffset >= ZIP64_MAGIC || cenSize >= ZIP64_MAGIC) {
+                final long zip64EndOffset = position;
+                ensure(56 + ZIP64_LOCATOR);
+                buffer.putInt(ZIP64_END_SIG)
+                        .putLong(44)
+                        .putShort((short) 45)
+                        .putShort((short) 45)
+                        .putInt(0)
+                        .putInt(0)
+                        .putLong(records.size())
+                        .putLong(records.size())
+                        .putLong(cenSize)
+                        .putLong(cenOffset);
+                buffer.putInt(ZIP64_LOCATOR_SIG)
+                        .putInt(0)
+                        .putLong(zip64EndOffset)
+                        .putInt(1);
+                position += 56 + ZIP64_LOCATOR;
+            }
+
+            ensure(END_HEADER);
+            buffer.putInt(END_SIG)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort((short) Math.min(records.size(), 0xFFFF))
+                    .putShort((short) Math.min(records.size(), 0xFFFF))
+                    .putInt((int) Math.min(cenSize, ZIP64_MAGIC))
+                    .putInt((int) Math.min(cenOffset, ZIP64_MAGIC))
+                    .putShort((short) 0);
+            position += END_HEADER;
+            flush();
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+
+    private void writeLocalHeader(CentralRecord record) throws IOException {
+        if (record.size >= ZIP64_MAGIC || record.compressedSize >= ZIP64_MAGIC) {
+            throw new ZipException("Entry " + record.header.name + " is too large, zip64 entries are not supported");
+        }
+        record.offset = position;
+        records.add(record);
+
+        final int extraLength = record.extra == null ? 0 : record.extra.length;
+        ensure(LOC_HEADER + record.header.rawName.length + extraLength);
+        buffer.putInt(LOC_SIG)
+                .putShort(record.versionNeeded)
+                .putShort((short) record.flags)
+                .putShort((short) record.method)
+                .putInt(record.header.dosTime)
+                .putInt((int) record.crc)
+                .putInt((int) record.compressedSize)
+                .putInt((int) record.size)
+                .putShort((short) record.header.rawName.length)
+                .putShort((short) extraLength)
+                .put(record.header.rawName);
+        if (record.extra != null) {
+            buffer.put(record.extra);
+        }
+        position += LOC_HEADER + record.header.rawName.length + extraLength;
+    }
+
+    private void writeCentralHeader(CentralRecord record) throws IOException {
+        final boolean zip64Offset = record.offset >= ZIP64_MAGIC;
+        final int extraLength = (record.extra == null ? 0 : record.extra.length) + (zip64Offset ? 12 : 0);
+        if (extraLength > 0xFFFF) {
+            throw new ZipException("Extra field of entry " + record.header.name + " is too large");
+        }
+        final int length = CEN_HEADER + record.header.rawName.length + extraLength + record.header.comment.length;
+        ensure(length);
+        buffer.putInt(CEN_SIG)
+                .putShort(record.header.versionMadeBy)
+                .putShort(record.versionNeeded)
+                .putShort((short) record.flags)
+                .putShort((short) record.method)
+                .putInt(record.header.dosTime)
+                .putInt((int) record.crc)
+                .putInt((int) record.compressedSize)
+                .putInt((int) record.size)
+                .putShort((short) record.header.rawName.length)
+                .putShort((short) extraLength)
+                .putShort((short) record.header.comment.length)
+                .putShort((short) 0)
+                .putShort(record.header.internalAttributes)
+                .putInt(record.header.externalAttributes)
+                .putInt((int) Math.min(record.offset, ZIP64_MAGIC))
+                .put(record.header.rawName);
+        if (zip64Offset) {
+            buffer.putShort((short) ZIP64_EXTRA)
+                    .putShort((short) 8)
+                    .putLong(record.offset);
+        }
+        if (record.extra != null) {
+            buffer.put(record.extra);
+        }
+        buffer.put(record.header.comment);
+        position += length;
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            final int n = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, n);
+            offset += n;
+        }
+        position += bytes.length;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static final class CentralRecord {
+        private final ZipReader.Entry header;
+        private final byte @Nullable [] extra;
+        private final short versionNeeded;
+        private final int method;
+        private final int flags;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private long offset;
+
+        private CentralRecord(ZipReader.Entry header, byte @Nullable [] extra, short versionNeeded, int method, int flags, long crc, long compressedSize, long size) {
+            this.header = header;
+            this.extra = extra;
+            this.versionNeeded = versionNeeded;
+            this.method = method;
+            this.flags = flags;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package net.neoforged.javadoctor.spec;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * An immutable map backed by an array of sorted keys and an array of values, with lookups using binary search.
+ * Docs mostly have a handful of members, for which this is much more compact than a hash map.
+ */
+final class ArrayMap<V> extends AbstractMap<String, V> {
+    private static final ArrayMap<?> EMPTY = new ArrayMap<>(new String[0], new Object[0]);
+
+    private final String[] keys;
+    private final Object[] values;
+
+    private ArrayMap(String[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> Map<String, V> empty() {
+        return (Map<String, V>) EMPTY;
+    }
+
+    static <V> Map<String, V> copyOf(Map<String, V> map) {
+        if (map instanceof ArrayMap) {
+            return map;
+        }
+        if (map.isEmpty()) {
+            return empty();
+        }
+        final String[] keys = map.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        final Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = map.get(keys[i]);
+        }
+        return new ArrayMap<>(keys, values);
+    }
+
+    /**
+     * Merges the two maps, using the merger for the values of the keys in both maps.
+     * Either map is returned as-is if merging didn't change any of its values, and values are otherwise shared with the new map.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> Map<String, V> merge(Map<String, V> a, Map<String, V> b, BiFunction<V, V, V> merger) {
+        final ArrayMap<V> left = (ArrayMap<V>) copyOf(a);
+        final ArrayMap<V> right = (ArrayMap<V>) copyOf(b);
+        if (right.keys.length == 0) return left;
+        if (left.keys.length == 0) return right;
+
+        // Both key arrays are sorted, so merge them like sorted lists
+        final String[] keys = new String[left.keys.length + right.keys.length];
+        final Object[] values = new Object[keys.length];
+        boolean sameAsLeft = true, sameAsRight = true;
+        int i = 0, j = 0, size = 0;
+        while (i < left.keys.length || j < right.keys.length) {
+            final int comparison = i == left.keys.length ? 1 : j == right.keys.length ? -1 : left.keys[i].compareTo(right.keys[j]);
+            if (comparison < 0) {
+                keys[size] = left.keys[i];
+                values[size] = left.values[i++];
+                sameAsRight = false;
+            } else if (comparison > 0) {
+                keys[size] = right.keys[j];
+                values[size] = right.values[j++];
+                sameAsLeft = false;
+            } else {
+                final V oldValue = (V) left.values[i++];
+                final V value = (V) right.values[j++];
+                final V merged = oldValue == null ? value : merger.apply(oldValue, value);
+                sameAsLeft &= merged == oldValue;
+                sameAsRight &= merged == value;
+                keys[size] = right.keys[j - 1];
+                values[size] = merged;
+            }
+            size++;
+        }
+
+        if (sameAsLeft) return left;
+        if (sameAsRight) return right;
+        return new ArrayMap<>(Arrays.copyOf(keys, size), Arrays.copyOf(values, size));
+    }
+
+    private int indexOf(Object key) {
+        return key instanceof String ? Arrays.binarySearch(keys, key) : -1;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super String, ? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            action.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<Entry<String, V>>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new Iterator<Entry<String, V>>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < keys.length;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Entry<String, V> next() {
+                        if (index >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        final Entry<String, V> entry = new SimpleImmutableEntry<>(keys[index], (V) values[index]);
+                        index++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+}
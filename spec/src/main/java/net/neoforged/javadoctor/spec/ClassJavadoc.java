@@ -3,6 +3,7 @@ package net.neoforged.javadoctor.spec;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,9 +24,10 @@ public final class ClassJavadoc {
 
     public ClassJavadoc(@Nullable JavadocEntry clazz, @Nullable Map<String, JavadocEntry> methods, @Nullable Map<String, JavadocEntry> fields, @Nullable Map<String, ClassJavadoc> innerClasses) {
         this.clazz = clazz;
-        this.methods = methods;
-        this.fields = fields;
-        this.innerClasses = innerClasses == null ? new HashMap<>() : innerClasses;
+        // The maps are copied into compact immutable ones, sorted by their keys
+        this.methods = methods == null ? null : ArrayMap.copyOf(methods);
+        this.fields = fields == null ? null : ArrayMap.copyOf(fields);
+        this.innerClasses = innerClasses == null ? ArrayMap.empty() : ArrayMap.copyOf(innerClasses);
     }
 
     @Nullable
@@ -49,49 +51,51 @@ public final class ClassJavadoc {
 
     public ClassJavadoc merge(@Nullable ClassJavadoc other) {
         if (other == null) return this;
-        return new ClassJavadoc(
-                clazz == null ? other.clazz : clazz.merge(other.clazz),
-                mergeMaps(JavadocEntry::merge, this.methods, other.methods),
-                mergeMaps(JavadocEntry::merge, this.fields, other.fields),
-                mergeMaps(ClassJavadoc::merge, this.innerClasses, other.innerClasses)
-        );
+        final JavadocEntry clazz = this.clazz == null ? other.clazz : this.clazz.merge(other.clazz);
+        final Map<String, JavadocEntry> methods = mergeMaps(JavadocEntry::merge, this.methods, other.methods);
+        final Map<String, JavadocEntry> fields = mergeMaps(JavadocEntry::merge, this.fields, other.fields);
+        final Map<String, ClassJavadoc> innerClasses = mergeMaps(ClassJavadoc::merge, this.innerClasses, other.innerClasses);
+
+        // Share the docs as-is when merging didn't change them
+        if (clazz == this.clazz && methods == this.methods && fields == this.fields && innerClasses == this.innerClasses) {
+            return this;
+        } else if (clazz == other.clazz && methods == other.methods && fields == other.fields && innerClasses == other.innerClasses) {
+            return other;
+        }
+        return new ClassJavadoc(clazz, methods, fields, innerClasses);
+    }
+
+    /**
+     * Creates a copy of these docs, with the docs of the inner class with the given name replaced.
+     */
+    public ClassJavadoc withInnerClass(String name, ClassJavadoc doc) {
+        final Map<String, ClassJavadoc> innerClasses = new HashMap<>(this.innerClasses);
+        innerClasses.put(name, doc);
+        return new ClassJavadoc(clazz, methods, fields, innerClasses);
     }
 
     public boolean isEmpty() {
         return clazz == null && methods == null && fields == null && innerClasses.isEmpty();
     }
 
-    @SafeVarargs
-    static <K, V> Map<K, V> mergeMaps(BiFunction<V, V, V> valueMerger, Map<K, V>... maps) {
-        if (maps.length == 1) {
-            return maps[0];
-        }
-        final Map<K, V> newMap = new HashMap<>();
-        for (Map<K, V> map : maps) {
-            if (map == null) continue;
-            map.forEach((k, v) -> {
-                final V oldValue = newMap.get(k);
-                if (oldValue == null) {
-                    newMap.put(k, v);
-                } else {
-                    newMap.replace(k, valueMerger.apply(oldValue, v));
-                }
-            });
+    static <V> Map<String, V> mergeMaps(BiFunction<V, V, V> valueMerger, @Nullable Map<String, V> a, @Nullable Map<String, V> b) {
+        if (a == null) {
+            return b == null ? ArrayMap.empty() : b;
+        } else if (b == null) {
+            return a;
         }
-        return newMap;
+        return ArrayMap.merge(a, b, valueMerger);
     }
 
-    @SafeVarargs
-    static <T> List<T> mergeLists(List<T>... lists) {
-        if (lists.length == 1) {
-            return lists[0];
-        }
-        final List<T> list = new ArrayList<>();
-        for (List<T> ts : lists) {
-            if (ts != null) {
-                list.addAll(ts);
-            }
+    static <T> List<T> mergeLists(@Nullable List<T> a, @Nullable List<T> b) {
+        if (a == null || a.isEmpty()) {
+            return b == null ? (a == null ? Collections.emptyList() : a) : b;
+        } else if (b == null || b.isEmpty()) {
+            return a;
         }
+        final List<T> list = new ArrayList<>(a.size() + b.size());
+        list.addAll(a);
+        list.addAll(b);
         return list;
     }
 }
@@ -17,7 +17,7 @@ public final class JavadocEntry {
 
     public JavadocEntry(@Nullable String doc, @Nullable Map<String, List<String>> tags, @Nullable String[] parameters, @Nullable String[] typeParameters) {
         this.doc = doc;
-        this.tags = tags;
+        this.tags = tags == null ? null : ArrayMap.copyOf(tags);
         this.parameters = parameters;
         this.typeParameters = typeParameters;
     }
@@ -46,12 +46,17 @@ public final class JavadocEntry {
         if (other == null) {
             return this;
         }
-        return new JavadocEntry(
-                doc == null ? other.doc : doc,
-                ClassJavadoc.mergeMaps(ClassJavadoc::mergeLists, this.tags, other.tags),
-                mergeParams(this.parameters, other.parameters),
-                mergeParams(this.typeParameters, other.typeParameters)
-        );
+        final String doc = this.doc == null ? other.doc : this.doc;
+        final Map<String, List<String>> tags = ClassJavadoc.mergeMaps(ClassJavadoc::mergeLists, this.tags, other.tags);
+        final String[] parameters = mergeParams(this.parameters, other.parameters);
+        final String[] typeParameters = mergeParams(this.typeParameters, other.typeParameters);
+
+        if (doc == this.doc && tags == this.tags && parameters == this.parameters && typeParameters == this.typeParameters) {
+            return this;
+        } else if (doc == other.doc && tags == other.tags && parameters == other.parameters && typeParameters == other.typeParameters) {
+            return other;
+        }
+        return new JavadocEntry(doc, tags, parameters, typeParameters);
     }
 
     public boolean isEmpty() {
@@ -70,15 +75,16 @@ public final class JavadocEntry {
         if (a.length != b.length) {
             throw new IllegalArgumentException("Param arrays must be of the same length!");
         }
-        final String[] newS = new String[a.length];
+        String[] newS = null;
         for (int i = 0; i < a.length; i++) {
-            final String fa = a[i];
-            if (fa == null) {
+            if (a[i] == null && b[i] != null) {
+                // Only copy once a missing param is actually filled in
+                if (newS == null) {
+                    newS = a.clone();
+                }
                 newS[i] = b[i];
-            } else {
-                newS[i] = fa;
             }
         }
-        return newS;
+        return newS == null ? a : newS;
     }
 }
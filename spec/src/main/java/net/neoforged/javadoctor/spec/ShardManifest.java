@@ -0,0 +1,50 @@
+package net.neoforged.javadoctor.spec;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * The manifest of docs split into a doctor file per package, so that consumers only need to load the packages they use.
+ * The files are located relative to the manifest.
+ */
+public class ShardManifest {
+    public static final String FILE_NAME = "manifest.json";
+
+    private final Map<String, String> shards;
+    @Nullable
+    private final String references;
+
+    /**
+     * @param shards     the doctor file of each package, by the name of the package
+     * @param references the doctor file holding the references of all packages, if any
+     */
+    public ShardManifest(Map<String, String> shards, @Nullable String references) {
+        this.shards = shards;
+        this.references = references;
+    }
+
+    public Map<String, String> getShards() {
+        return shards;
+    }
+
+    @Nullable
+    public String getReferences() {
+        return references;
+    }
+
+    /**
+     * Gets the name of the package of a top-level class.
+     */
+    public static String getPackage(String className) {
+        final int end = className.lastIndexOf('.');
+        return end == -1 ? "" : className.substring(0, end);
+    }
+
+    /**
+     * Gets the name of the doctor file of a package. The default package is named {@code default}, which being a keyword, can't be a package name.
+     */
+    public static String getShardName(String packageName, String extension) {
+        return (packageName.isEmpty() ? "default" : packageName) + "." + extension;
+    }
+}
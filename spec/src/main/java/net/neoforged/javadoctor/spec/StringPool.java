@@ -0,0 +1,34 @@
+package net.neoforged.javadoctor.spec;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A pool of strings used to deduplicate the strings of docs while they are read, as the same tag names,
+ * descriptors and parameter names are repeated across many entries.
+ * Unlike {@link String#intern()}, the strings are only kept alive as long as the pool is.
+ */
+public final class StringPool {
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+
+    @Nullable
+    public String intern(@Nullable String string) {
+        if (string == null) return null;
+        final String existing = strings.putIfAbsent(string, string);
+        return existing == null ? string : existing;
+    }
+
+    /**
+     * Interns the strings of the array in place.
+     */
+    @Nullable
+    public String[] intern(@Nullable String[] strings) {
+        if (strings == null) return null;
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = intern(strings[i]);
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,196 @@
+package com.matyrobbrt.javadoctor.test;
+
+import com.google.gson.stream.JsonWriter;
+import net.neoforged.javadoctor.injector.Main;
+import net.neoforged.javadoctor.io.gson.GsonJDocIO;
+import net.neoforged.javadoctor.spec.ClassJavadoc;
+import net.neoforged.javadoctor.spec.DocReferences;
+import net.neoforged.javadoctor.spec.JavadocEntry;
+import net.neoforged.javadoctor.spec.JavadoctorInformation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Checks that injecting with {@code --incremental} reuses the previous output only when nothing it depends on changed.
+ * Whether a source was reused is told by a marker added to it in the previous output, which only a reused source keeps.
+ */
+public class IncrementalInjectionTests {
+    private static final String SOURCE = "stab/Stabby.java";
+    private static final String MARKER = "\n// Reused from the previous output\n";
+
+    @TempDir
+    Path dir;
+    private Path input;
+    private Path output;
+    private Path doctor;
+    private Path classpath;
+
+    @BeforeEach
+    void setup() throws IOException {
+        input = Path.of(System.getProperty("decompiledJar"));
+        output = dir.resolve("output.jar");
+        doctor = dir.resolve("extra.json");
+        classpath = dir.resolve("classpath.jar");
+        writeDoctor("An extra tag");
+        writeClasspath("first");
+    }
+
+    @Test
+    void testOutputIsStable() throws Exception {
+        inject();
+        final byte[] first = Files.readAllBytes(output);
+        inject();
+        Assertions.assertArrayEquals(first, Files.readAllBytes(output), "Injecting the same input twice gave different outputs");
+    }
+
+    @Test
+    void testUnchangedSourcesAreReused() throws Exception {
+        inject();
+        markSource();
+        inject();
+        Assertions.assertTrue(readSource().endsWith(MARKER), "The unchanged source was injected again");
+    }
+
+    @Test
+    void testChangedDoctorIsInjectedAgain() throws Exception {
+        inject();
+        markSource();
+        writeDoctor("Another extra tag");
+        inject();
+        final String source = readSource();
+        Assertions.assertFalse(source.endsWith(MARKER), "The source was reused although its docs changed");
+        Assertions.assertTrue(source.contains("Another extra tag"), "The source wasn't injected with the new docs");
+    }
+
+    @Test
+    void testChangedClasspathIsInjectedAgain() throws Exception {
+        inject();
+        markSource();
+        writeClasspath("second, which is longer");
+        inject();
+        Assertions.assertFalse(readSource().endsWith(MARKER), "The source was reused although the classpath changed");
+    }
+
+    @Test
+    void testCorruptManifestIsIgnored() throws Exception {
+        inject();
+        final byte[] expected = Files.readAllBytes(output);
+        markSource();
+        Files.writeString(manifest(), "{\"version\": 1, \"key\": [");
+        inject();
+        Assertions.assertArrayEquals(expected, Files.readAllBytes(output), "A corrupt manifest wasn't treated as a miss");
+    }
+
+    @Test
+    void testDifferentManifestIsIgnored() throws Exception {
+        inject();
+        final byte[] expected = Files.readAllBytes(output);
+        markSource();
+        Files.writeString(manifest(), Files.readString(manifest()).replaceFirst("\"key\":\"[^\"]*\"", "\"key\":\"another\""));
+        inject();
+        Assertions.assertArrayEquals(expected, Files.readAllBytes(output), "The manifest of another configuration wasn't treated as a miss");
+    }
+
+    @Test
+    void testCorruptPreviousOutputIsIgnored() throws Exception {
+        inject();
+        final byte[] expected = Files.readAllBytes(output);
+        // Cut the central directory off
+        Files.write(output, Arrays.copyOf(expected, expected.length / 2));
+        inject();
+        Assertions.assertArrayEquals(expected, Files.readAllBytes(output), "A corrupt previous output wasn't treated as a miss");
+    }
+
+    private void inject() throws Exception {
+        Main.main(new String[] {
+                "--input", input.toString(),
+                "--output", output.toString(),
+                "--doctor", doctor.toString(),
+                "--classpath", classpath.toString(),
+                "--java-version", "17",
+                "--incremental"
+        });
+    }
+
+    private Path manifest() {
+        return output.resolveSibling(output.getFileName() + ".cache.json");
+    }
+
+    private void writeDoctor(String tag) throws IOException {
+        final Map<String, List<String>> tags = new HashMap<>();
+        tags.put("apiNote", List.of(tag));
+        final Map<String, ClassJavadoc> docs = new HashMap<>();
+        docs.put("stab.Stabby", new ClassJavadoc(new JavadocEntry(null, tags, null, null), null, null, null));
+        try (final JsonWriter writer = new JsonWriter(Files.newBufferedWriter(doctor, StandardCharsets.UTF_8))) {
+            GsonJDocIO.write(new JavadoctorInformation(new DocReferences(new HashMap<>()), docs), writer);
+        }
+    }
+
+    private void writeClasspath(String content) throws IOException {
+        try (final ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(classpath))) {
+            out.putNextEntry(new ZipEntry("content.txt"));
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+    }
+
+    private String readSource() throws IOException {
+        try (final ZipFile zip = new ZipFile(output.toFile())) {
+            try (final InputStream in = zip.getInputStream(zip.getEntry(SOURCE))) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /**
+     * Appends the marker to the source in the output, rewriting the output with stored entries.
+     */
+    private void markSource() throws IOException {
+        final Map<String, byte[]> entries = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+        try (final ZipFile zip = new ZipFile(output.toFile())) {
+            final Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+            while (zipEntries.hasMoreElements()) {
+                final ZipEntry entry = zipEntries.nextElement();
+                try (final InputStream in = zip.getInputStream(entry)) {
+                    names.add(entry.getName());
+                    entries.put(entry.getName(), in.readAllBytes());
+                }
+            }
+        }
+        entries.put(SOURCE, (new String(entries.get(SOURCE), StandardCharsets.UTF_8) + MARKER).getBytes(StandardCharsets.UTF_8));
+        try (final OutputStream file = Files.newOutputStream(output); final ZipOutputStream out = new ZipOutputStream(file)) {
+            for (final String name : names) {
+                final byte[] data = entries.get(name);
+                final ZipEntry entry = new ZipEntry(name);
+                final CRC32 crc = new CRC32();
+                crc.update(data);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(data.length);
+                entry.setCrc(crc.getValue());
+                out.putNextEntry(entry);
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.matyrobbrt.javadoctor.test;
+
+import com.google.gson.JsonObject;
+import net.neoforged.javadoctor.injector.ClassParserFactory;
+import net.neoforged.javadoctor.injector.DocFormatter;
+import net.neoforged.javadoctor.injector.JavadocInjector;
+import net.neoforged.javadoctor.injector.JavadocProvider;
+import net.neoforged.javadoctor.injector.ast.JClass;
+import net.neoforged.javadoctor.injector.ast.JClassParser;
+import net.neoforged.javadoctor.injector.ast.JElement;
+import net.neoforged.javadoctor.injector.ast.JField;
+import net.neoforged.javadoctor.injector.ast.JMethod;
+import net.neoforged.javadoctor.injector.ast.JParameter;
+import net.neoforged.javadoctor.io.gson.GsonJDocIO;
+import net.neoforged.javadoctor.spec.ClassJavadoc;
+import net.neoforged.javadoctor.spec.JavadocEntry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class LineMappingTests {
+    @Test
+    void testMappingsFollowLines() throws Exception {
+        forEachSource((injector, parser, provider, name, text) -> {
+            final String[] lines = text.split("\n");
+            final int[] mapping = identityMapping(lines.length);
+
+            final JavadocInjector.InjectionResult result = inject(injector, name, text, mapping);
+            final String[] newLines = result.newSource.split("\r?\n");
+
+            Assertions.assertEquals(mapping.length, result.mapping.length, () -> "Mapping of " + name + " does not have the same amount of lines");
+            for (int i = 0; i < result.mapping.length; i += 2) {
+                final int original = result.mapping[i];
+                final int mapped = result.mapping[i + 1];
+                Assertions.assertEquals(original, mapping[i], () -> "Original line of a mapping of " + name + " was changed");
+                Assertions.assertEquals(lines[original - 1], newLines[mapped - 1], () -> "Line " + original + " of " + name + " was not mapped to line " + mapped);
+            }
+        });
+    }
+
+    @Test
+    void testMappingsMatchPreviousAlgorithm() throws Exception {
+        final boolean[] nestedDocs = new boolean[1];
+        forEachSource((injector, parser, provider, name, text) -> {
+            final int lineCount = text.split("\n").length;
+            final Map<String, int[]> mappings = new HashMap<>();
+            // Without a mapping, one is made from the lines of the classes and their members, which must only see the docs inserted after them
+            mappings.put("no", null);
+            mappings.put("an identity", identityMapping(lineCount));
+            mappings.put("a scrambled", scrambledMapping(lineCount, new Random(name.hashCode())));
+
+            mappings.forEach((kind, mapping) -> {
+                final int[] expected = PreviousLineMapping.compute(parser, provider, name, text, mapping == null ? null : mapping.clone());
+                final JavadocInjector.InjectionResult result = inject(injector, name, text, mapping);
+                Assertions.assertArrayEquals(expected, result.mapping, () -> "Mapping of " + name + " with " + kind + " mapping does not match the previous algorithm");
+            });
+
+            final ClassJavadoc doc = provider.get(className(name));
+            if (doc != null && doc.innerClasses() != null && doc.innerClasses().values().stream().anyMatch(inner -> !inner.isEmpty())) {
+                nestedDocs[0] = true;
+            }
+        });
+        Assertions.assertTrue(nestedDocs[0], "No source has docs on nested classes");
+    }
+
+    private static void forEachSource(SourceConsumer consumer) throws Exception {
+        final Path jar = Path.of(System.getProperty("decompiledJar"));
+        try (final FileSystem fs = FileSystems.newFileSystem(jar)) {
+            final JavadocProvider provider;
+            try (final Reader reader = Files.newBufferedReader(fs.getPath("javadoctor.json"))) {
+                provider = GsonJDocIO.read(GsonJDocIO.GSON, GsonJDocIO.GSON.fromJson(reader, JsonObject.class)).getClassDocs()::get;
+            }
+            final JClassParser parser = ServiceLoader.load(ClassParserFactory.class).iterator().next()
+                    .createParser(List.of(), jar.toFile(), 17);
+            final JavadocInjector injector = new JavadocInjector(parser, provider);
+
+            final List<Path> sources;
+            try (final Stream<Path> files = Files.walk(fs.getPath("/"))) {
+                sources = files.filter(path -> path.toString().endsWith(".java")).collect(Collectors.toList());
+            }
+            Assertions.assertFalse(sources.isEmpty(), "No sources were decompiled");
+
+            for (final Path source : sources) {
+                consumer.accept(injector, parser, provider, source.toString().substring(1), Files.readString(source).replace("\r\n", "\n"));
+            }
+        }
+    }
+
+    private static JavadocInjector.InjectionResult inject(JavadocInjector injector, String name, String text, int[] mapping) {
+        return injector.injectDocs(name, className(name), text, mapping)
+                .getResult().orElseThrow(() -> new AssertionError("Failed to parse " + name));
+    }
+
+    private static String className(String name) {
+        return name.substring(0, name.length() - 5).replace('/', '.');
+    }
+
+    // Map every line to itself, so that every line has to be moved by the docs inserted above it
+    private static int[] identityMapping(int lineCount) {
+        final int[] mapping = new int[lineCount * 2];
+        for (int i = 0; i < lineCount; i++) {
+            mapping[i * 2] = i + 1;
+            mapping[i * 2 + 1] = i + 1;
+        }
+        return mapping;
+    }
+
+    // Map the lines out of order, with some lines mapped more than once and some lines past the end of the source
+    private static int[] scrambledMapping(int lineCount, Random random) {
+        final int pairs = lineCount + lineCount / 2;
+        final int[] mapping = new int[pairs * 2];
+        for (int i = 0; i < pairs; i++) {
+            mapping[i * 2] = 1 + random.nextInt(lineCount + 5);
+            mapping[i * 2 + 1] = 1 + random.nextInt(lineCount * 3);
+        }
+        return mapping;
+    }
+
+    @FunctionalInterface
+    private interface SourceConsumer {
+        void accept(JavadocInjector injector, JClassParser parser, JavadocProvider provider, String name, String text) throws Exception;
+    }
+
+    /**
+     * The line mapping of the injector before it was computed in a single pass, which rescanned the whole mapping whenever a doc was inserted.
+     */
+    private static final class PreviousLineMapping {
+        private final JClassParser parser;
+        private final String[] lines;
+
+        private PreviousLineMapping(JClassParser parser, String[] lines) {
+            this.parser = parser;
+            this.lines = lines;
+        }
+
+        static int[] compute(JClassParser parser, JavadocProvider provider, String path, String source, int[] mappingIn) {
+            if (provider.get(className(path)) == null) return mappingIn;
+            final PreviousLineMapping previous = new PreviousLineMapping(parser, source.split("\n"));
+            final List<JClass> classes = parser.parseFromPath(path, source).getResult().orElseThrow(() -> new AssertionError("Failed to parse " + path));
+            final List<Integer> mapping = new ArrayList<>();
+            if (mappingIn != null) {
+                for (int i : mappingIn) {
+                    mapping.add(i);
+                }
+            }
+            for (final JClass type : classes) {
+                final ClassJavadoc javadoc = provider.get(type.getFullyQualifiedName());
+                if (javadoc != null) {
+                    previous.inject(type, javadoc, mapping, mappingIn == null);
+                }
+            }
+            return mapping.stream().mapToInt(i -> i).toArray();
+        }
+
+        private void inject(JClass declaration, ClassJavadoc javadoc, List<Integer> mapping, boolean appendLineMappings) {
+            final List<JElement> members = new ArrayList<>(declaration.getChildren());
+            members.sort(Comparator.comparing(r -> r.getSourceLine().orElse(-1)));
+
+            if (appendLineMappings) {
+                declaration.getSourceLine().ifPresent(line -> {
+                    mapping.add(line);
+                    mapping.add(line);
+                });
+                for (final JElement member : members) {
+                    member.getSourceLine().ifPresent(line -> {
+                        mapping.add(line);
+                        mapping.add(line);
+                    });
+                }
+            }
+
+            if (javadoc.clazz() != null) {
+                declaration.getSourceLine().ifPresent(line -> pushMappingFix(mapping, line, DocFormatter.formatDoc(
+                        getIndent(line), javadoc.clazz(), parameterNames(declaration), typeParameterNames(declaration)).length));
+            }
+            final Map<String, JavadocEntry> fields = (javadoc.fields() == null ? new HashMap<String, JavadocEntry>() : javadoc.fields()).entrySet()
+                    .stream().collect(Collectors.toMap(e -> e.getKey().split(":", 2)[0], Map.Entry::getValue));
+            final Map<String, JavadocEntry> methods = javadoc.methods() == null ? new HashMap<>() : parser.processMethodMap(javadoc.methods());
+
+            for (final JElement member : members) {
+                try {
+                    if (member instanceof JField) {
+                        final JavadocEntry entry = fields.get(member.getName());
+                        if (entry == null) continue;
+                        member.getSourceLine().ifPresent(line -> pushMappingFix(mapping, line, DocFormatter.formatDoc(getIndent(line), entry, null, null).length));
+                    } else if (member instanceof JMethod method) {
+                        final JavadocEntry entry = methods.get(method.getDescriptor());
+                        if (entry == null) continue;
+                        member.getSourceLine().ifPresent(line -> pushMappingFix(mapping, line, DocFormatter.formatDoc(
+                                getIndent(line), entry, parameterNames(method), typeParameterNames(method)).length));
+                    } else if (member instanceof JClass type) {
+                        final ClassJavadoc innerDoc = javadoc.innerClasses().get(type.getName());
+                        if (innerDoc != null) {
+                            inject(type, innerDoc, mapping, appendLineMappings);
+                        }
+                    }
+                } catch (Exception ignored) {
+                }
+            }
+        }
+
+        private static void pushMappingFix(List<Integer> mapping, int start, int amount) {
+            for (int i = 0; i < mapping.size(); i += 2) {
+                int originalLine = mapping.get(i);
+                if (originalLine >= start) {
+                    mapping.set(i + 1, mapping.get(i + 1) + amount);
+                }
+            }
+        }
+
+        private String getIndent(int line) {
+            final String text = lines[line - 1];
+            int end = 0;
+            while (end < text.length() && (text.charAt(end) == '\t' || text.charAt(end) == ' ')) {
+                end++;
+            }
+            return text.substring(0, end);
+        }
+
+        private static List<String> parameterNames(Object declaration) {
+            return declaration instanceof JElement.WithParameters withParameters ? names(withParameters.getParameters()) : null;
+        }
+
+        private static List<String> typeParameterNames(Object declaration) {
+            return declaration instanceof JElement.WithTypeParameters withTypeParameters ? names(withTypeParameters.getTypeParameters()) : null;
+        }
+
+        private static List<String> names(List<JParameter> parameters) {
+            return parameters.stream().map(JParameter::getName).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.matyrobbrt.javadoctor.test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Checks that docs sharded by package, whether embedded in the jar or given as a directory, are injected like the single doctor.
+ */
+public class ShardedDocsTests {
+    @Test
+    void testEmbeddedShards() throws IOException {
+        try (final FileSystem fs = open("shardedJavaparserJar")) {
+            Assertions.assertTrue(Files.exists(fs.getPath("javadoctor/manifest.json")), "The jar has no embedded shard manifest");
+            Assertions.assertFalse(Files.exists(fs.getPath("javadoctor.json")), "The jar has a single embedded doctor");
+        }
+        assertSameSources("shardedJavaparserJar");
+    }
+
+    @Test
+    void testShardDirectory() throws IOException {
+        try (final FileSystem fs = open("shardedDirectoryJavaparserJar")) {
+            Assertions.assertFalse(Files.exists(fs.getPath("javadoctor")), "The jar has embedded shards");
+        }
+        assertSameSources("shardedDirectoryJavaparserJar");
+    }
+
+    private static void assertSameSources(String propertyName) throws IOException {
+        final Map<String, String> expected = readSources("javaparserJar");
+        Assertions.assertNotEquals(readSources("decompiledJar"), expected, "The single doctor didn't inject any docs");
+        final Map<String, String> actual = readSources(propertyName);
+        Assertions.assertEquals(expected.keySet(), actual.keySet(), "The sources of " + propertyName + " are not the same ones");
+        expected.forEach((name, source) -> Assertions.assertEquals(source, actual.get(name), () -> "Source " + name + " of " + propertyName + " has different docs"));
+    }
+
+    private static Map<String, String> readSources(String propertyName) throws IOException {
+        final Map<String, String> sources = new TreeMap<>();
+        try (final FileSystem fs = open(propertyName); final Stream<Path> files = Files.walk(fs.getPath("/"))) {
+            for (final Path path : (Iterable<Path>) files.filter(file -> file.toString().endsWith(".java"))::iterator) {
+                sources.put(path.toString(), Files.readString(path));
+            }
+        }
+        return sources;
+    }
+
+    private static FileSystem open(String propertyName) throws IOException {
+        return FileSystems.newFileSystem(Path.of(System.getProperty(propertyName)));
+    }
+}